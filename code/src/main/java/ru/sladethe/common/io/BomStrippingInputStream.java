@@ -0,0 +1,135 @@
+package ru.sladethe.common.io;
+
+import org.jetbrains.annotations.Contract;
+import ru.sladethe.common.text.StringUtil;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Skips UTF-8, UTF-16 or UTF-32 byte order mark at the beginning of the stream. The mark is detected on the first
+ * access, no more than 4 leading bytes are buffered.
+ *
+ * @author Maxim Shipko (sladethe@gmail.com)
+ * @see StringUtil#getBomLength(byte[], int, int)
+ */
+@SuppressWarnings({"WeakerAccess", "MethodDoesntCallSuperMethod"})
+public final class BomStrippingInputStream extends InputStream {
+    private static final int MAX_BOM_LENGTH = 4;
+
+    private final InputStream inputStream;
+
+    @Nullable
+    private byte[] headBytes;
+    private int headOffset;
+    private int headLength;
+
+    @Nullable
+    private Charset charset;
+
+    public BomStrippingInputStream(@Nonnull InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    /**
+     * @return the charset of the detected byte order mark or {@code null} if the stream has no mark
+     * @throws IOException if an I/O error occurs while reading the stream head
+     */
+    @Nullable
+    public Charset getCharset() throws IOException {
+        ensureHeadRead();
+        return charset;
+    }
+
+    @Override
+    public int read() throws IOException {
+        ensureHeadRead();
+
+        if (headOffset < headLength) {
+            return headBytes[headOffset++] & 0xFF;
+        }
+
+        return inputStream.read();
+    }
+
+    @Override
+    public int read(@Nonnull byte[] bytes, @Nonnegative int offset, @Nonnegative int length) throws IOException {
+        if (offset < 0 || length < 0 || length > bytes.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (length == 0) {
+            return 0;
+        }
+
+        ensureHeadRead();
+
+        if (headOffset < headLength) {
+            int headByteCount = Math.min(length, headLength - headOffset);
+            System.arraycopy(headBytes, headOffset, bytes, offset, headByteCount);
+            headOffset += headByteCount;
+            return headByteCount;
+        }
+
+        return inputStream.read(bytes, offset, length);
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        if (count <= 0L) {
+            return 0L;
+        }
+
+        ensureHeadRead();
+
+        if (headOffset < headLength) {
+            int headByteCount = (int) Math.min(count, headLength - headOffset);
+            headOffset += headByteCount;
+            return headByteCount;
+        }
+
+        return inputStream.skip(count);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return headBytes == null ? inputStream.available() : headLength - headOffset + inputStream.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    @Contract(pure = true)
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void ensureHeadRead() throws IOException {
+        if (headBytes != null) {
+            return;
+        }
+
+        byte[] bytes = new byte[MAX_BOM_LENGTH];
+        int length = 0;
+
+        while (length < MAX_BOM_LENGTH) {
+            int readByteCount = inputStream.read(bytes, length, MAX_BOM_LENGTH - length);
+            if (readByteCount == -1) {
+                break;
+            }
+            length += readByteCount;
+        }
+
+        headBytes = bytes;
+        headOffset = StringUtil.getBomLength(bytes, 0, length);
+        headLength = length;
+        charset = StringUtil.getBomCharset(bytes, 0, length);
+    }
+}
@@ -0,0 +1,280 @@
+package ru.sladethe.common.io;
+
+import ru.sladethe.common.lang.ThreadUtil;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the verified payload of a critical file in memory and re-reads the file only when it has changed.
+ * <p>
+ * The file is considered unchanged while its size, modification time and file key are the same. A file modified
+ * within the last {@link #RACY_MODIFICATION_INTERVAL_MILLIS} before it was read may be modified again without
+ * changing these attributes, so such file is re-read on each access until it stays untouched long enough.
+ * <p>
+ * Optionally the reader watches the file directory with a {@link WatchService} and does not check the file
+ * attributes at all until a change is reported.
+ *
+ * @author Maxim Shipko (sladethe@gmail.com)
+ * @see FileUtil#getCriticalFileBytes(File, File)
+ */
+@SuppressWarnings("WeakerAccess")
+public final class CachedCriticalFileReader implements Closeable {
+    public static final long RACY_MODIFICATION_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(2L);
+
+    private static final int MAX_READ_ATTEMPT_COUNT = 3;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final File file;
+    private final File backupFile;
+    @Nullable
+    private final ReloadListener reloadListener;
+
+    @Nullable
+    private final WatchService watchService;
+    private volatile boolean watching;
+    private volatile boolean changeReported = true;
+
+    @Nullable
+    private FileState fileState;
+    @Nullable
+    private byte[] bytes;
+
+    /**
+     * Creates the reader which checks the file attributes on each access.
+     *
+     * @param file critical file
+     */
+    public CachedCriticalFileReader(@Nonnull File file) {
+        this.file = file;
+        this.backupFile = FileUtil.getCriticalBackupFile(file);
+        this.reloadListener = null;
+        this.watchService = null;
+    }
+
+    /**
+     * @param file           critical file
+     * @param backupFile     backup file of the critical file
+     * @param watch          {@code true} to watch the file directory with a {@link WatchService} and check
+     *                       the file attributes only after a change is reported
+     * @param reloadListener listener to notify when the payload is re-read after a change of the file
+     * @throws IOException if an I/O error occurs while registering the watch service
+     */
+    public CachedCriticalFileReader(@Nonnull File file, @Nonnull File backupFile, boolean watch,
+                                    @Nullable ReloadListener reloadListener) throws IOException {
+        this.file = file;
+        this.backupFile = backupFile;
+        this.reloadListener = reloadListener;
+
+        if (watch) {
+            Path directory = file.getAbsoluteFile().toPath().getParent();
+            this.watchService = directory.getFileSystem().newWatchService();
+
+            try {
+                directory.register(
+                        watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY
+                );
+            } catch (IOException | RuntimeException e) {
+                watchService.close();
+                throw e;
+            }
+
+            watching = true;
+            ThreadUtil.newThread(
+                    getClass().getSimpleName() + " watching '" + file + '\'', this::watch, true
+            ).start();
+        } else {
+            this.watchService = null;
+        }
+    }
+
+    @Nonnull
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return copy of the critical file payload
+     * @throws IOException if neither the critical file nor its backup can be read
+     */
+    @Nonnull
+    public byte[] getBytes() throws IOException {
+        lock.lock();
+        try {
+            if (bytes == null || isChanged()) {
+                try {
+                    reload();
+                } catch (IOException | RuntimeException e) {
+                    changeReported = true;
+                    throw e;
+                }
+            }
+
+            return bytes.clone();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the reader to check the file on the next access.
+     */
+    public void invalidate() {
+        lock.lock();
+        try {
+            fileState = null;
+            changeReported = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops watching the file directory. The reader keeps working without the watch service.
+     */
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watching = false;
+            watchService.close();
+        }
+    }
+
+    private boolean isChanged() throws IOException {
+        if (watching && !changeReported) {
+            return false;
+        }
+
+        changeReported = false;
+        return fileState == null || fileState.isRacy() || !fileState.equals(FileState.get(file));
+    }
+
+    private void reload() throws IOException {
+        boolean initialLoad = bytes == null;
+        byte[] previousBytes = bytes;
+
+        for (int attemptIndex = 0; ; ++attemptIndex) {
+            FileState stateBefore = FileState.get(file);
+            byte[] newBytes = FileUtil.getCriticalFileBytes(file, backupFile);
+            FileState stateAfter = FileState.get(file);
+
+            boolean stable = stateAfter != null && stateAfter.equals(stateBefore);
+            if (stable || attemptIndex + 1 >= MAX_READ_ATTEMPT_COUNT) {
+                bytes = newBytes;
+                fileState = stable ? stateAfter : null;
+                break;
+            }
+        }
+
+        if (!initialLoad && reloadListener != null && !Arrays.equals(previousBytes, bytes)) {
+            reloadListener.onReload(file, bytes.clone());
+        }
+    }
+
+    private void watch() {
+        WatchService watchService = Objects.requireNonNull(this.watchService);
+        Path fileName = file.toPath().getFileName();
+        Path backupFileName = backupFile.toPath().getFileName();
+
+        try {
+            while (true) {
+                WatchKey watchKey = watchService.take();
+
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    Object context = event.context();
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || fileName.equals(context) || backupFileName.equals(context)) {
+                        changeReported = true;
+                    }
+                }
+
+                if (!watchKey.reset()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // No operation.
+        } finally {
+            watching = false;
+        }
+    }
+
+    /**
+     * Listener of the critical file payload changes.
+     */
+    @FunctionalInterface
+    public interface ReloadListener {
+        /**
+         * Is called under the reader lock after the payload has been re-read and differs from the previous one.
+         *
+         * @param file  critical file
+         * @param bytes copy of the new payload
+         */
+        void onReload(@Nonnull File file, @Nonnull byte[] bytes);
+    }
+
+    private static final class FileState {
+        private final long size;
+        @Nonnull
+        private final FileTime lastModifiedTime;
+        @Nullable
+        private final Object fileKey;
+        private final long checkTimeMillis;
+
+        private FileState(long size, @Nonnull FileTime lastModifiedTime, @Nullable Object fileKey) {
+            this.size = size;
+            this.lastModifiedTime = lastModifiedTime;
+            this.fileKey = fileKey;
+            this.checkTimeMillis = System.currentTimeMillis();
+        }
+
+        @Nullable
+        private static FileState get(@Nonnull File file) throws IOException {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            } catch (NoSuchFileException ignored) {
+                return null;
+            }
+
+            return new FileState(attributes.size(), attributes.lastModifiedTime(), attributes.fileKey());
+        }
+
+        private boolean isRacy() {
+            return checkTimeMillis - lastModifiedTime.toMillis() < RACY_MODIFICATION_INTERVAL_MILLIS;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            FileState fileState = (FileState) o;
+            return size == fileState.size
+                    && lastModifiedTime.equals(fileState.lastModifiedTime)
+                    && Objects.equals(fileKey, fileState.fileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, lastModifiedTime, fileKey);
+        }
+    }
+}
@@ -0,0 +1,838 @@
+package ru.sladethe.common.io;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.Contract;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Stores many keyed critical blobs in a few append-only segment files instead of a file pair per blob.
+ * <p>
+ * Each record is checksummed with SHA-256. Records are never overwritten, so an update of a key is atomic:
+ * after a crash the key has either its previous or its new value, a torn record at the tail of the last segment
+ * is detected and truncated on the next {@link #open(File) open}. Any other corrupted record, which is scanned
+ * on open, fails the open instead of discarding the records following it. Record locations are checkpointed
+ * into the index critical file on {@link #checkpoint()}, {@link #compact()} and {@link #close()}, so the startup
+ * needs only one index read plus a scan of the records written after the last checkpoint.
+ * <p>
+ * Removed and overwritten records occupy the disk space until {@link #compact()} is called.
+ *
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("WeakerAccess")
+public final class CriticalStore implements Closeable {
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 64L * FileUtil.BYTES_PER_MB;
+
+    private static final String INDEX_FILE_NAME = "index.dat";
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_SUFFIX = ".dat";
+
+    private static final int INDEX_VERSION = 1;
+
+    private static final int RECORD_MAGIC = 0x53435231;
+    private static final int RECORD_HEADER_LENGTH = 3 * Integer.BYTES;
+    private static final int RECORD_DIGEST_LENGTH = 32;
+    private static final int TOMBSTONE_VALUE_LENGTH = -1;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final File directory;
+    private final long maxSegmentSize;
+    private final boolean syncOnWrite;
+
+    private final Map<String, RecordLocation> locationByKey = new HashMap<>();
+    private final NavigableMap<Integer, Segment> segmentById = new TreeMap<>();
+    private int nextSegmentId;
+    private long garbageByteCount;
+    private boolean closed;
+
+    private CriticalStore(@Nonnull File directory, @Nonnegative long maxSegmentSize, boolean syncOnWrite) {
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    /**
+     * Opens the store with the {@link #DEFAULT_MAX_SEGMENT_SIZE default segment size} and without
+     * synchronizing each write with the storage device.
+     *
+     * @param directory store directory, it is created if missing
+     * @return opened store
+     * @throws IOException if an I/O error occurs
+     */
+    @Nonnull
+    public static CriticalStore open(@Nonnull File directory) throws IOException {
+        return open(directory, DEFAULT_MAX_SEGMENT_SIZE, false);
+    }
+
+    /**
+     * @param directory      store directory, it is created if missing
+     * @param maxSegmentSize segment size to start a new segment after, a single record may exceed it
+     * @param syncOnWrite    whether to force each {@link #put(String, byte[]) put} and
+     *                       {@link #remove(String) remove} to the storage device before returning
+     * @return opened store
+     * @throws IOException if an I/O error occurs
+     */
+    @Nonnull
+    public static CriticalStore open(
+            @Nonnull File directory, @Nonnegative long maxSegmentSize, boolean syncOnWrite) throws IOException {
+        if (maxSegmentSize <= 0L) {
+            throw new IllegalArgumentException("Argument 'maxSegmentSize' (" + maxSegmentSize + " B) is not positive.");
+        }
+
+        FileUtils.forceMkdir(directory);
+
+        CriticalStore store = new CriticalStore(directory, maxSegmentSize, syncOnWrite);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            store.closeSegments();
+            throw e;
+        }
+        return store;
+    }
+
+    @Contract(pure = true)
+    @Nonnull
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Nullable
+    public byte[] get(@Nonnull String key) throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+
+            RecordLocation location = locationByKey.get(key);
+            if (location == null) {
+                return null;
+            }
+
+            Record record = Record.decode(readRecordBytes(location));
+            if (record == null || !key.equals(record.key) || record.value == null) {
+                throw new IOException("Record of key '" + key + "' in '" + getSegmentFile(location.segmentId)
+                        + "' at " + location.offset + " is corrupted.");
+            }
+
+            return record.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean contains(@Nonnull String key) {
+        lock.lock();
+        try {
+            return locationByKey.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Nonnull
+    public Set<String> getKeys() {
+        lock.lock();
+        try {
+            return new HashSet<>(locationByKey.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return locationByKey.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of bytes occupied by removed and overwritten records
+     */
+    public long getGarbageByteCount() {
+        lock.lock();
+        try {
+            return garbageByteCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(@Nonnull String key, @Nonnull byte[] value) throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            RecordLocation previousLocation = locationByKey.put(key, append(Record.encode(key, value)));
+            if (previousLocation != null) {
+                garbageByteCount += previousLocation.length;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param key key to remove
+     * @return {@code true} iff the store contained the key
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean remove(@Nonnull String key) throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+
+            if (!locationByKey.containsKey(key)) {
+                return false;
+            }
+
+            RecordLocation tombstoneLocation = append(Record.encode(key, null));
+            garbageByteCount += locationByKey.remove(key).length + tombstoneLocation.length;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces all segments to the storage device and writes the index, so the next {@link #open(File) open}
+     * does not need to scan the records written so far.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void checkpoint() throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            writeIndex();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rewrites all live records into new segments, writes the index and deletes the old segments. If the new
+     * segments or the index can't be written, the store keeps using the old segments.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void compact() throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+
+            List<Segment> oldSegments = new ArrayList<>(segmentById.values());
+            Map<String, RecordLocation> newLocationByKey = new HashMap<>(locationByKey.size());
+            int firstNewSegmentId = nextSegmentId;
+            Segment segment = null;
+
+            try {
+                for (Map.Entry<String, RecordLocation> entry : locationByKey.entrySet()) {
+                    byte[] recordBytes = readRecordBytes(entry.getValue());
+                    Record record = Record.decode(recordBytes);
+                    if (record == null || !entry.getKey().equals(record.key) || record.value == null) {
+                        throw new IOException("Record of key '" + entry.getKey() + "' is corrupted.");
+                    }
+
+                    if (segment == null || segment.size > 0L && segment.size + recordBytes.length > maxSegmentSize) {
+                        segment = createSegment();
+                    }
+
+                    newLocationByKey.put(entry.getKey(), segment.append(recordBytes));
+                }
+
+                writeIndex(segmentById.tailMap(firstNewSegmentId).values(), newLocationByKey, 0L);
+            } catch (IOException | RuntimeException e) {
+                Collection<Segment> newSegmentView = segmentById.tailMap(firstNewSegmentId).values();
+                List<Segment> newSegments = new ArrayList<>(newSegmentView);
+                newSegmentView.clear();
+
+                try {
+                    deleteSegments(newSegments);
+                } catch (IOException deleteException) {
+                    e.addSuppressed(deleteException);
+                }
+                throw e;
+            }
+
+            for (Segment oldSegment : oldSegments) {
+                segmentById.remove(oldSegment.id);
+            }
+
+            locationByKey.clear();
+            locationByKey.putAll(newLocationByKey);
+            garbageByteCount = 0L;
+
+            deleteSegments(oldSegments);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the index and closes all segments. Does nothing if the store is already closed.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+
+            try {
+                writeIndex();
+            } finally {
+                closed = true;
+                closeSegments();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Store '" + directory + "' is closed.");
+        }
+    }
+
+    @Nonnull
+    private RecordLocation append(@Nonnull byte[] recordBytes) throws IOException {
+        Segment segment = segmentById.isEmpty() ? null : segmentById.lastEntry().getValue();
+
+        if (segment == null || segment.size > 0L && segment.size + recordBytes.length > maxSegmentSize) {
+            segment = createSegment();
+        }
+
+        RecordLocation location = segment.append(recordBytes);
+        if (syncOnWrite) {
+            segment.channel.force(false);
+        }
+        return location;
+    }
+
+    @Nonnull
+    private byte[] readRecordBytes(@Nonnull RecordLocation location) throws IOException {
+        Segment segment = segmentById.get(location.segmentId);
+        if (segment == null) {
+            throw new IOException("Can't find segment '" + getSegmentFile(location.segmentId) + "'.");
+        }
+
+        byte[] recordBytes = new byte[location.length];
+        segment.read(location.offset, recordBytes);
+        return recordBytes;
+    }
+
+    private void load() throws IOException {
+        NavigableMap<Integer, File> segmentFileById = listSegmentFiles();
+        Index index = readIndex(segmentFileById);
+
+        if (index != null) {
+            nextSegmentId = index.nextSegmentId;
+        }
+
+        int lastSegmentId = segmentFileById.isEmpty() ? -1 : segmentFileById.lastKey();
+
+        for (Map.Entry<Integer, File> entry : segmentFileById.entrySet()) {
+            int segmentId = entry.getKey();
+            Long checkpointSize = index == null ? null : index.sizeBySegmentId.get(segmentId);
+
+            if (index != null && checkpointSize == null && segmentId < index.nextSegmentId) {
+                // Left by a compaction, which was interrupted after writing the index.
+                FileUtils.forceDelete(entry.getValue());
+                continue;
+            }
+
+            Segment segment = openSegment(segmentId);
+            segmentById.put(segmentId, segment);
+            nextSegmentId = Math.max(nextSegmentId, segmentId + 1);
+
+            if (index != null && checkpointSize != null) {
+                if (index.sizeBySegmentId.lastKey() == segmentId) {
+                    replay(segment, checkpointSize, segmentId == lastSegmentId);
+                }
+            } else {
+                replay(segment, 0L, segmentId == lastSegmentId);
+            }
+        }
+    }
+
+    /**
+     * Applies the records of the segment starting at the offset. Only a torn tail of the last segment is truncated:
+     * a record which is shorter than the header or reaches the end of the segment, or zero bytes left by
+     * the file system after a crash. Segments are forced before a rollover, so a crash can't damage other records,
+     * and any other corrupted record fails the replay.
+     *
+     * @param segment     segment to replay
+     * @param offset      offset of the first record to apply
+     * @param lastSegment whether the segment is the last one, so it can end with a torn record
+     * @throws IOException if an I/O error occurs or a record is corrupted
+     */
+    private void replay(@Nonnull Segment segment, @Nonnegative long offset, boolean lastSegment) throws IOException {
+        ByteBuffer headerBuffer = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+
+        while (offset < segment.size) {
+            long remainingByteCount = segment.size - offset;
+            int recordLength = -1;
+
+            if (remainingByteCount >= RECORD_HEADER_LENGTH) {
+                headerBuffer.clear();
+                segment.read(offset, headerBuffer.array());
+                recordLength = Record.getLength(headerBuffer);
+            }
+
+            Record record = null;
+            if (recordLength > 0 && recordLength <= remainingByteCount) {
+                byte[] recordBytes = new byte[recordLength];
+                segment.read(offset, recordBytes);
+                record = Record.decode(recordBytes);
+            }
+
+            if (record == null) {
+                boolean torn = remainingByteCount < RECORD_HEADER_LENGTH
+                        || recordLength > 0 && recordLength >= remainingByteCount
+                        || segment.isZeroFilled(offset);
+
+                if (!lastSegment || !torn) {
+                    throw new IOException("Record in '" + segment.file + "' at " + offset + " is corrupted.");
+                }
+
+                segment.truncate(offset);
+                return;
+            }
+
+            RecordLocation previousLocation;
+            if (record.value == null) {
+                previousLocation = locationByKey.remove(record.key);
+                garbageByteCount += recordLength;
+            } else {
+                previousLocation = locationByKey.put(record.key, new RecordLocation(segment.id, offset, recordLength));
+            }
+
+            if (previousLocation != null) {
+                garbageByteCount += previousLocation.length;
+            }
+
+            offset += recordLength;
+        }
+    }
+
+    @Nonnull
+    private NavigableMap<Integer, File> listSegmentFiles() throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Can't list files of '" + directory + "'.");
+        }
+
+        NavigableMap<Integer, File> segmentFileById = new TreeMap<>();
+
+        for (File file : files) {
+            String fileName = file.getName();
+            if (!file.isFile() || !fileName.startsWith(SEGMENT_FILE_PREFIX) || !fileName.endsWith(SEGMENT_FILE_SUFFIX)) {
+                continue;
+            }
+
+            try {
+                segmentFileById.put(Integer.parseInt(fileName.substring(
+                        SEGMENT_FILE_PREFIX.length(), fileName.length() - SEGMENT_FILE_SUFFIX.length()
+                )), file);
+            } catch (NumberFormatException ignored) {
+                // Not a segment file.
+            }
+        }
+
+        return segmentFileById;
+    }
+
+    /**
+     * Reads the index and puts its locations into {@link #locationByKey}.
+     *
+     * @return read index or {@code null} if the index is missing or does not match the segment files,
+     * in this case all segments should be scanned
+     */
+    @Nullable
+    private Index readIndex(@Nonnull NavigableMap<Integer, File> segmentFileById) throws IOException {
+        File indexFile = getIndexFile();
+        if (!indexFile.isFile() && !FileUtil.getCriticalBackupFile(indexFile).isFile()) {
+            return null;
+        }
+
+        Index index = new Index();
+
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(
+                FileUtil.getCriticalFileBytes(indexFile)
+        ))) {
+            if (input.readInt() != INDEX_VERSION) {
+                return null;
+            }
+
+            index.nextSegmentId = input.readInt();
+
+            for (int segmentIndex = input.readInt(); --segmentIndex >= 0; ) {
+                int segmentId = input.readInt();
+                long segmentSize = input.readLong();
+
+                File segmentFile = segmentFileById.get(segmentId);
+                if (segmentFile == null || segmentFile.length() < segmentSize) {
+                    return null;
+                }
+
+                index.sizeBySegmentId.put(segmentId, segmentSize);
+            }
+
+            garbageByteCount = input.readLong();
+
+            for (int entryIndex = input.readInt(); --entryIndex >= 0; ) {
+                byte[] keyBytes = new byte[input.readInt()];
+                input.readFully(keyBytes);
+
+                RecordLocation location = new RecordLocation(input.readInt(), input.readLong(), input.readInt());
+                if (!index.sizeBySegmentId.containsKey(location.segmentId)) {
+                    locationByKey.clear();
+                    garbageByteCount = 0L;
+                    return null;
+                }
+
+                locationByKey.put(new String(keyBytes, UTF_8), location);
+            }
+        } catch (IOException ignored) {
+            locationByKey.clear();
+            garbageByteCount = 0L;
+            return null;
+        }
+
+        return index;
+    }
+
+    private void writeIndex() throws IOException {
+        writeIndex(segmentById.values(), locationByKey, garbageByteCount);
+    }
+
+    private void writeIndex(
+            @Nonnull Collection<Segment> segments, @Nonnull Map<String, RecordLocation> locationByKey,
+            @Nonnegative long garbageByteCount) throws IOException {
+        for (Segment segment : segments) {
+            segment.channel.force(false);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                Integer.BYTES * 4 + Long.BYTES + segments.size() * (Integer.BYTES + Long.BYTES)
+                        + locationByKey.size() * 64
+        );
+
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(INDEX_VERSION);
+            output.writeInt(nextSegmentId);
+
+            output.writeInt(segments.size());
+            for (Segment segment : segments) {
+                output.writeInt(segment.id);
+                output.writeLong(segment.size);
+            }
+
+            output.writeLong(garbageByteCount);
+
+            output.writeInt(locationByKey.size());
+            for (Map.Entry<String, RecordLocation> entry : locationByKey.entrySet()) {
+                byte[] keyBytes = entry.getKey().getBytes(UTF_8);
+                output.writeInt(keyBytes.length);
+                output.write(keyBytes);
+
+                RecordLocation location = entry.getValue();
+                output.writeInt(location.segmentId);
+                output.writeLong(location.offset);
+                output.writeInt(location.length);
+            }
+        }
+
+        FileUtil.writeCriticalFile(getIndexFile(), bytes.toByteArray(), FileUtil.CriticalFileCodec.DEFLATE_FAST);
+    }
+
+    @Nonnull
+    private Segment createSegment() throws IOException {
+        // Only the last segment may end with a torn record, so the previous one is forced before a rollover.
+        if (!segmentById.isEmpty()) {
+            segmentById.lastEntry().getValue().channel.force(false);
+        }
+
+        Segment segment = openSegment(nextSegmentId++);
+        segmentById.put(segment.id, segment);
+        return segment;
+    }
+
+    @Nonnull
+    private Segment openSegment(int segmentId) throws IOException {
+        File segmentFile = getSegmentFile(segmentId);
+        return new Segment(segmentId, segmentFile, FileChannel.open(
+                segmentFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+        ));
+    }
+
+    /**
+     * Closes and deletes all given segments even if some of them fail to close.
+     */
+    private static void deleteSegments(@Nonnull Collection<Segment> segments) throws IOException {
+        IOException exception = null;
+
+        for (Segment segment : segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+
+            FileUtils.deleteQuietly(segment.file);
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private void closeSegments() throws IOException {
+        IOException exception = null;
+
+        for (Segment segment : segmentById.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+
+        segmentById.clear();
+        locationByKey.clear();
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    @Nonnull
+    private File getIndexFile() {
+        return new File(directory, INDEX_FILE_NAME);
+    }
+
+    @Nonnull
+    private File getSegmentFile(int segmentId) {
+        return new File(directory, String.format("%s%08d%s", SEGMENT_FILE_PREFIX, segmentId, SEGMENT_FILE_SUFFIX));
+    }
+
+    private static final class Index {
+        private final NavigableMap<Integer, Long> sizeBySegmentId = new TreeMap<>();
+        private int nextSegmentId;
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final File file;
+        private final FileChannel channel;
+        private long size;
+
+        private Segment(int id, @Nonnull File file, @Nonnull FileChannel channel) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        @Nonnull
+        private RecordLocation append(@Nonnull byte[] recordBytes) throws IOException {
+            long offset = size;
+            ByteBuffer buffer = ByteBuffer.wrap(recordBytes);
+
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, offset + buffer.position());
+                }
+            } catch (IOException e) {
+                // A partially written record should not remain in the middle of the segment.
+                try {
+                    channel.truncate(offset);
+                } catch (IOException truncateException) {
+                    e.addSuppressed(truncateException);
+                }
+                throw e;
+            }
+
+            size += recordBytes.length;
+            return new RecordLocation(id, offset, recordBytes.length);
+        }
+
+        private void read(@Nonnegative long offset, @Nonnull byte[] bytes) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException("Unexpected end of '" + file + "' at " + (offset + buffer.position()) + '.');
+                }
+            }
+        }
+
+        /**
+         * @return {@code true} iff all bytes from the offset to the end of the segment are zero
+         */
+        private boolean isZeroFilled(@Nonnegative long offset) throws IOException {
+            byte[] bytes = new byte[(int) Math.min(size - offset, FileUtil.BYTES_PER_KB * 64L)];
+
+            for (long position = offset; position < size; position += bytes.length) {
+                int length = (int) Math.min(size - position, bytes.length);
+                if (length < bytes.length) {
+                    bytes = new byte[length];
+                }
+
+                read(position, bytes);
+
+                for (byte b : bytes) {
+                    if (b != 0) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        private void truncate(@Nonnegative long newSize) throws IOException {
+            channel.truncate(newSize);
+            size = newSize;
+        }
+
+        private void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static final class RecordLocation {
+        private final int segmentId;
+        private final long offset;
+        private final int length;
+
+        private RecordLocation(int segmentId, long offset, int length) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Record layout: {@code magic, keyLength, valueLength, key, value, SHA-256(all previous bytes)}.
+     * Removal of a key is written as a tombstone record with the value length of {@code -1}.
+     */
+    private static final class Record {
+        @Nonnull
+        private final String key;
+        @Nullable
+        private final byte[] value;
+
+        private Record(@Nonnull String key, @Nullable byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Nonnull
+        private static byte[] encode(@Nonnull String key, @Nullable byte[] value) {
+            byte[] keyBytes = key.getBytes(UTF_8);
+            int valueLength = value == null ? 0 : value.length;
+            long recordLength = (long) RECORD_HEADER_LENGTH + keyBytes.length + valueLength + RECORD_DIGEST_LENGTH;
+
+            if (recordLength > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Record of key '" + key + "' is too large: " + recordLength + " B.");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) recordLength);
+            buffer.putInt(RECORD_MAGIC);
+            buffer.putInt(keyBytes.length);
+            buffer.putInt(value == null ? TOMBSTONE_VALUE_LENGTH : valueLength);
+            buffer.put(keyBytes);
+            if (value != null) {
+                buffer.put(value);
+            }
+
+            MessageDigest digest = DigestUtils.getSha256Digest();
+            digest.update(buffer.array(), 0, buffer.position());
+            buffer.put(digest.digest());
+
+            return buffer.array();
+        }
+
+        /**
+         * @return total record length or {@code -1} if the header is invalid
+         */
+        private static int getLength(@Nonnull ByteBuffer headerBuffer) {
+            int magic = headerBuffer.getInt(0);
+            int keyLength = headerBuffer.getInt(Integer.BYTES);
+            int valueLength = headerBuffer.getInt(2 * Integer.BYTES);
+
+            if (magic != RECORD_MAGIC || keyLength < 0 || valueLength < TOMBSTONE_VALUE_LENGTH) {
+                return -1;
+            }
+
+            long recordLength = (long) RECORD_HEADER_LENGTH + keyLength + Math.max(valueLength, 0)
+                    + RECORD_DIGEST_LENGTH;
+            return recordLength > Integer.MAX_VALUE ? -1 : (int) recordLength;
+        }
+
+        /**
+         * @return decoded record or {@code null} if the record is corrupted
+         */
+        @Nullable
+        private static Record decode(@Nonnull byte[] recordBytes) {
+            if (recordBytes.length < RECORD_HEADER_LENGTH + RECORD_DIGEST_LENGTH) {
+                return null;
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(recordBytes);
+            if (getLength(buffer) != recordBytes.length) {
+                return null;
+            }
+
+            int digestOffset = recordBytes.length - RECORD_DIGEST_LENGTH;
+            MessageDigest digest = DigestUtils.getSha256Digest();
+            digest.update(recordBytes, 0, digestOffset);
+            byte[] expectedDigest = digest.digest();
+
+            for (int i = 0; i < RECORD_DIGEST_LENGTH; ++i) {
+                if (expectedDigest[i] != recordBytes[digestOffset + i]) {
+                    return null;
+                }
+            }
+
+            int keyLength = buffer.getInt(Integer.BYTES);
+            int valueLength = buffer.getInt(2 * Integer.BYTES);
+            String key = new String(recordBytes, RECORD_HEADER_LENGTH, keyLength, UTF_8);
+
+            if (valueLength == TOMBSTONE_VALUE_LENGTH) {
+                return new Record(key, null);
+            }
+
+            int valueOffset = RECORD_HEADER_LENGTH + keyLength;
+            return new Record(key, Arrays.copyOfRange(recordBytes, valueOffset, valueOffset + valueLength));
+        }
+    }
+}
@@ -3,13 +3,24 @@ package ru.sladethe.common.io;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
 import org.jetbrains.annotations.Contract;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.Arrays;
+import java.util.OptionalInt;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
  * @author Maxim Shipko (sladethe@gmail.com)
@@ -36,6 +47,17 @@ public final class FileUtil {
     public static final long BYTES_PER_TB = BYTES_PER_GB * GB_PER_TB;
     public static final long BYTES_PER_PB = BYTES_PER_TB * TB_PER_PB;
 
+    public static final int DEFAULT_CRITICAL_FILE_HASH_CHUNK_SIZE = (int) (4L * BYTES_PER_MB);
+
+    private static final int SUBSCRIBED_FILE_DIGEST_LENGTH = 32;
+    private static final byte[] SUBSCRIBED_FILE_MAGIC = {'S', 'C', 'F'};
+    private static final byte SUBSCRIBED_FILE_VERSION = 1;
+    private static final byte CHUNKED_SUBSCRIBED_FILE_VERSION = 2;
+    private static final int SUBSCRIBED_FILE_HEADER_LENGTH = SUBSCRIBED_FILE_MAGIC.length + 2;
+    private static final int CHUNKED_SUBSCRIBED_FILE_HEADER_LENGTH
+            = SUBSCRIBED_FILE_HEADER_LENGTH + Integer.BYTES + Long.BYTES;
+    private static final int SUBSCRIBED_FILE_BUFFER_SIZE = (int) (64L * BYTES_PER_KB);
+
     private FileUtil() {
         throw new UnsupportedOperationException();
     }
@@ -47,30 +69,190 @@ public final class FileUtil {
         return new File(FilenameUtils.getFullPath(path) + FilenameUtils.getBaseName(path) + ".bak");
     }
 
+    /**
+     * Reads a subscribed file in any of the supported formats:
+     * <ul>
+     * <li>legacy: {@code payload, SHA-256(payload)};</li>
+     * <li>encoded: {@code header, encodedPayload, SHA-256(encodedPayload, header)},
+     * where {@code header} is {@code magic, version, codec};</li>
+     * <li>chunked: {@code header, encodedPayload, chunkDigests, SHA-256(chunkDigests, header)},
+     * where {@code header} is {@code magic, version, codec, chunkSize, encodedPayloadLength}
+     * and {@code chunkDigests} are SHA-256 digests of the consecutive encoded payload chunks.</li>
+     * </ul>
+     * Digests cover the header after the data, so a legacy payload that accidentally starts with the magic bytes
+     * is still recognized correctly.
+     *
+     * @param subscribedFile file to read
+     * @return verified and decoded payload or {@code null} if the file is missing or corrupted
+     * @throws IOException if an I/O error occurs
+     */
     @Contract("null -> fail")
     @Nullable
     private static byte[] getSubscribedFileBytes(@Nonnull File subscribedFile) throws IOException {
-        if (subscribedFile.isFile()) {
-            int digestLength = 32;
-            byte[] subscribedBytes = FileUtils.readFileToByteArray(subscribedFile);
-            int subscribedByteCount = subscribedBytes.length;
+        if (!subscribedFile.isFile()) {
+            return null;
+        }
 
-            if (subscribedByteCount >= digestLength) {
-                byte[] bytes = new byte[subscribedByteCount - digestLength];
-                byte[] digest = new byte[digestLength];
+        byte[] subscribedBytes = FileUtils.readFileToByteArray(subscribedFile);
+        int payloadByteCount = subscribedBytes.length - SUBSCRIBED_FILE_DIGEST_LENGTH;
+        if (payloadByteCount < 0) {
+            return null;
+        }
 
-                System.arraycopy(subscribedBytes, 0, bytes, 0, subscribedByteCount - digestLength);
-                System.arraycopy(subscribedBytes, subscribedByteCount - digestLength, digest, 0, digestLength);
+        int version = getSubscribedFileVersion(subscribedBytes, payloadByteCount);
+        CriticalFileCodec codec = version == 0 ? null : CriticalFileCodec.getById(
+                subscribedBytes[SUBSCRIBED_FILE_HEADER_LENGTH - 1]
+        );
 
-                if (Arrays.equals(DigestUtils.sha256(bytes), digest)) {
-                    return bytes;
-                }
+        if (codec != null) {
+            if (version == SUBSCRIBED_FILE_VERSION && isSubscribedFileDigestValid(
+                    subscribedBytes, SUBSCRIBED_FILE_HEADER_LENGTH,
+                    payloadByteCount - SUBSCRIBED_FILE_HEADER_LENGTH, SUBSCRIBED_FILE_HEADER_LENGTH
+            )) {
+                return codec.decode(
+                        subscribedBytes, SUBSCRIBED_FILE_HEADER_LENGTH, payloadByteCount - SUBSCRIBED_FILE_HEADER_LENGTH
+                );
+            }
+
+            if (version == CHUNKED_SUBSCRIBED_FILE_VERSION && verifyChunkedSubscribedBytes(subscribedBytes) == -1) {
+                return codec.decode(
+                        subscribedBytes, CHUNKED_SUBSCRIBED_FILE_HEADER_LENGTH,
+                        (int) getChunkedSubscribedFileEncodedLength(subscribedBytes)
+                );
             }
         }
 
+        if (isSubscribedFileDigestValid(subscribedBytes, 0, payloadByteCount, 0)) {
+            return Arrays.copyOf(subscribedBytes, payloadByteCount);
+        }
+
         return null;
     }
 
+    /**
+     * @return format version or {@code 0} if the bytes do not start with the magic
+     */
+    private static int getSubscribedFileVersion(@Nonnull byte[] subscribedBytes, @Nonnegative int payloadByteCount) {
+        if (payloadByteCount < SUBSCRIBED_FILE_HEADER_LENGTH) {
+            return 0;
+        }
+
+        for (int i = 0; i < SUBSCRIBED_FILE_MAGIC.length; ++i) {
+            if (subscribedBytes[i] != SUBSCRIBED_FILE_MAGIC[i]) {
+                return 0;
+            }
+        }
+
+        return subscribedBytes[SUBSCRIBED_FILE_MAGIC.length];
+    }
+
+    private static boolean isSubscribedFileDigestValid(@Nonnull byte[] subscribedBytes, @Nonnegative int offset,
+                                                       @Nonnegative int length, @Nonnegative int headerLength) {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        digest.update(subscribedBytes, offset, length);
+        digest.update(subscribedBytes, 0, headerLength);
+        return isDigestEqual(digest.digest(), subscribedBytes, offset + length);
+    }
+
+    private static boolean isDigestEqual(
+            @Nonnull byte[] digest, @Nonnull byte[] subscribedBytes, @Nonnegative int digestOffset) {
+        for (int i = 0; i < SUBSCRIBED_FILE_DIGEST_LENGTH; ++i) {
+            if (digest[i] != subscribedBytes[digestOffset + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static long getChunkedSubscribedFileEncodedLength(@Nonnull byte[] subscribedBytes) {
+        return ByteBuffer.wrap(subscribedBytes).getLong(SUBSCRIBED_FILE_HEADER_LENGTH + Integer.BYTES);
+    }
+
+    /**
+     * Verifies chunks of the chunked subscribed file in parallel.
+     *
+     * @return {@code -1} if the file is intact, index of the first corrupted chunk
+     * or {@code Integer.MAX_VALUE} if the header or the chunk digests are corrupted
+     */
+    private static int verifyChunkedSubscribedBytes(@Nonnull byte[] subscribedBytes) {
+        if (subscribedBytes.length < CHUNKED_SUBSCRIBED_FILE_HEADER_LENGTH + SUBSCRIBED_FILE_DIGEST_LENGTH) {
+            return Integer.MAX_VALUE;
+        }
+
+        int chunkSize = ByteBuffer.wrap(subscribedBytes).getInt(SUBSCRIBED_FILE_HEADER_LENGTH);
+        long encodedLength = getChunkedSubscribedFileEncodedLength(subscribedBytes);
+        if (chunkSize <= 0 || encodedLength < 0L) {
+            return Integer.MAX_VALUE;
+        }
+
+        long chunkCount = (encodedLength + chunkSize - 1L) / chunkSize;
+        if ((long) CHUNKED_SUBSCRIBED_FILE_HEADER_LENGTH + encodedLength
+                + (chunkCount + 1L) * SUBSCRIBED_FILE_DIGEST_LENGTH != subscribedBytes.length) {
+            return Integer.MAX_VALUE;
+        }
+
+        int chunkDigestsOffset = CHUNKED_SUBSCRIBED_FILE_HEADER_LENGTH + (int) encodedLength;
+
+        OptionalInt corruptedChunkIndex = IntStream.range(0, (int) chunkCount).parallel().filter(chunkIndex -> {
+            int chunkOffset = CHUNKED_SUBSCRIBED_FILE_HEADER_LENGTH + chunkIndex * chunkSize;
+            int chunkLength = (int) Math.min(chunkSize, encodedLength - (long) chunkIndex * chunkSize);
+
+            MessageDigest digest = DigestUtils.getSha256Digest();
+            digest.update(subscribedBytes, chunkOffset, chunkLength);
+            return !isDigestEqual(
+                    digest.digest(), subscribedBytes, chunkDigestsOffset + chunkIndex * SUBSCRIBED_FILE_DIGEST_LENGTH
+            );
+        }).min();
+
+        if (corruptedChunkIndex.isPresent()) {
+            return corruptedChunkIndex.getAsInt();
+        }
+
+        return isSubscribedFileDigestValid(
+                subscribedBytes, chunkDigestsOffset, (int) chunkCount * SUBSCRIBED_FILE_DIGEST_LENGTH,
+                CHUNKED_SUBSCRIBED_FILE_HEADER_LENGTH
+        ) ? -1 : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Verifies critical file without decoding its payload. Chunks of the files written with a positive hash chunk
+     * size are verified in parallel, files written without it are verified as a single chunk.
+     *
+     * @param file critical file
+     * @return {@code -1} if the file is intact, index of the first corrupted chunk
+     * or {@code Integer.MAX_VALUE} if the file header or the chunk digests are corrupted
+     * @throws IOException if an I/O error occurs or the file does not exist
+     * @see #writeCriticalFile(File, File, byte[], CriticalFileCodec, int)
+     */
+    @Contract("null -> fail")
+    public static int verifyCriticalFile(@Nonnull File file) throws IOException {
+        byte[] subscribedBytes = FileUtils.readFileToByteArray(file);
+        int payloadByteCount = subscribedBytes.length - SUBSCRIBED_FILE_DIGEST_LENGTH;
+        if (payloadByteCount < 0) {
+            return Integer.MAX_VALUE;
+        }
+
+        int version = getSubscribedFileVersion(subscribedBytes, payloadByteCount);
+
+        if (version == CHUNKED_SUBSCRIBED_FILE_VERSION) {
+            int corruptedChunkIndex = verifyChunkedSubscribedBytes(subscribedBytes);
+            if (corruptedChunkIndex == -1 || isSubscribedFileDigestValid(subscribedBytes, 0, payloadByteCount, 0)) {
+                return -1;
+            }
+            return corruptedChunkIndex;
+        }
+
+        if (version == SUBSCRIBED_FILE_VERSION && isSubscribedFileDigestValid(
+                subscribedBytes, SUBSCRIBED_FILE_HEADER_LENGTH,
+                payloadByteCount - SUBSCRIBED_FILE_HEADER_LENGTH, SUBSCRIBED_FILE_HEADER_LENGTH
+        )) {
+            return -1;
+        }
+
+        return isSubscribedFileDigestValid(subscribedBytes, 0, payloadByteCount, 0) ? -1 : 0;
+    }
+
     @Contract("null, _ -> fail; _, null -> fail")
     @Nonnull
     public static byte[] getCriticalFileBytes(@Nonnull File file, @Nonnull File backupFile) throws IOException {
@@ -96,25 +278,136 @@ public final class FileUtil {
         return getCriticalFileBytes(file, getCriticalBackupFile(file));
     }
 
-    @Contract("null, _ -> fail; _, null -> fail")
-    private static void writeSubscribedFile(@Nonnull File subscribedFile, @Nonnull byte[] bytes) throws IOException {
-        byte[] digest = DigestUtils.sha256(bytes);
-        byte[] subscribedBytes = new byte[bytes.length + digest.length];
+    @Contract("null, _, _, _ -> fail; _, null, _, _ -> fail; _, _, null, _ -> fail")
+    private static void writeSubscribedFile(@Nonnull File subscribedFile, @Nonnull byte[] bytes,
+                                            @Nonnull CriticalFileCodec codec, int hashChunkSize) throws IOException {
+        if (hashChunkSize > 0) {
+            writeChunkedSubscribedFile(subscribedFile, bytes, codec, hashChunkSize);
+            return;
+        }
+
+        try (OutputStream outputStream = FileUtils.openOutputStream(subscribedFile)) {
+            if (codec == CriticalFileCodec.NONE) {
+                outputStream.write(bytes);
+                outputStream.write(DigestUtils.sha256(bytes));
+                return;
+            }
 
-        System.arraycopy(bytes, 0, subscribedBytes, 0, bytes.length);
-        System.arraycopy(digest, 0, subscribedBytes, bytes.length, digest.length);
+            byte[] header = getSubscribedFileHeader(SUBSCRIBED_FILE_VERSION, codec, SUBSCRIBED_FILE_HEADER_LENGTH);
+            outputStream.write(header);
 
-        FileUtils.writeByteArrayToFile(subscribedFile, subscribedBytes);
+            MessageDigest digest = DigestUtils.getSha256Digest();
+            codec.encode(bytes, new DigestOutputStream(outputStream, digest));
+            digest.update(header);
+            outputStream.write(digest.digest());
+        }
+    }
+
+    /**
+     * Hashes chunks of the encoded payload in parallel. Unlike the other formats, the compressed payload
+     * is encoded in memory first.
+     */
+    private static void writeChunkedSubscribedFile(@Nonnull File subscribedFile, @Nonnull byte[] bytes,
+                                                   @Nonnull CriticalFileCodec codec, int hashChunkSize)
+            throws IOException {
+        byte[] encodedBytes;
+        if (codec == CriticalFileCodec.NONE) {
+            encodedBytes = bytes;
+        } else {
+            UnsynchronizedByteArrayOutputStream encodedOutputStream = new UnsynchronizedByteArrayOutputStream(
+                    SUBSCRIBED_FILE_BUFFER_SIZE
+            );
+            codec.encode(bytes, encodedOutputStream);
+            encodedBytes = encodedOutputStream.toByteArray();
+        }
+
+        int encodedLength = encodedBytes.length;
+        int chunkCount = (int) (((long) encodedLength + hashChunkSize - 1L) / hashChunkSize);
+        byte[] chunkDigests = new byte[chunkCount * SUBSCRIBED_FILE_DIGEST_LENGTH];
+
+        IntStream.range(0, chunkCount).parallel().forEach(chunkIndex -> {
+            int chunkOffset = chunkIndex * hashChunkSize;
+
+            MessageDigest digest = DigestUtils.getSha256Digest();
+            digest.update(encodedBytes, chunkOffset, Math.min(hashChunkSize, encodedLength - chunkOffset));
+            System.arraycopy(
+                    digest.digest(), 0, chunkDigests, chunkIndex * SUBSCRIBED_FILE_DIGEST_LENGTH,
+                    SUBSCRIBED_FILE_DIGEST_LENGTH
+            );
+        });
+
+        byte[] header = getSubscribedFileHeader(
+                CHUNKED_SUBSCRIBED_FILE_VERSION, codec, CHUNKED_SUBSCRIBED_FILE_HEADER_LENGTH
+        );
+        ByteBuffer.wrap(header, SUBSCRIBED_FILE_HEADER_LENGTH, Integer.BYTES + Long.BYTES)
+                .putInt(hashChunkSize)
+                .putLong(encodedLength);
+
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        digest.update(chunkDigests);
+        digest.update(header);
+
+        try (OutputStream outputStream = FileUtils.openOutputStream(subscribedFile)) {
+            outputStream.write(header);
+            outputStream.write(encodedBytes);
+            outputStream.write(chunkDigests);
+            outputStream.write(digest.digest());
+        }
+    }
+
+    @Nonnull
+    private static byte[] getSubscribedFileHeader(byte version, @Nonnull CriticalFileCodec codec, int headerLength) {
+        byte[] header = Arrays.copyOf(SUBSCRIBED_FILE_MAGIC, headerLength);
+        header[SUBSCRIBED_FILE_MAGIC.length] = version;
+        header[SUBSCRIBED_FILE_MAGIC.length + 1] = codec.id;
+        return header;
     }
 
     @Contract("null, _, _ -> fail; _, null, _ -> fail; _, _, null -> fail")
     public static void writeCriticalFile(
             @Nonnull File file, @Nonnull File backupFile, @Nonnull byte[] bytes) throws IOException {
+        writeCriticalFile(file, backupFile, bytes, CriticalFileCodec.NONE);
+    }
+
+    /**
+     * Writes critical file, optionally compressing its payload. The codec is recorded in the file header,
+     * so {@link #getCriticalFileBytes(File, File)} decodes the payload transparently.
+     *
+     * @param file       critical file
+     * @param backupFile backup file to keep the previous version while writing
+     * @param bytes      payload
+     * @param codec      payload codec; {@link CriticalFileCodec#NONE} writes the legacy header-less format
+     * @throws IOException if an I/O error occurs
+     */
+    @Contract("null, _, _, _ -> fail; _, null, _, _ -> fail; _, _, null, _ -> fail; _, _, _, null -> fail")
+    public static void writeCriticalFile(
+            @Nonnull File file, @Nonnull File backupFile, @Nonnull byte[] bytes, @Nonnull CriticalFileCodec codec)
+            throws IOException {
+        writeCriticalFile(file, backupFile, bytes, codec, 0);
+    }
+
+    /**
+     * Writes critical file, optionally compressing its payload and storing a digest of each payload chunk.
+     * Chunk digests are calculated and verified in parallel, which speeds up reading of large files, and allow
+     * {@link #verifyCriticalFile(File)} to locate a corrupted chunk.
+     *
+     * @param file          critical file
+     * @param backupFile    backup file to keep the previous version while writing
+     * @param bytes         payload
+     * @param codec         payload codec
+     * @param hashChunkSize size of the encoded payload chunk to calculate a separate digest for,
+     *                      a zero or negative value stores a single digest of the whole payload
+     * @throws IOException if an I/O error occurs
+     * @see #DEFAULT_CRITICAL_FILE_HASH_CHUNK_SIZE
+     */
+    @Contract("null, _, _, _, _ -> fail; _, null, _, _, _ -> fail; _, _, null, _, _ -> fail; _, _, _, null, _ -> fail")
+    public static void writeCriticalFile(@Nonnull File file, @Nonnull File backupFile, @Nonnull byte[] bytes,
+                                         @Nonnull CriticalFileCodec codec, int hashChunkSize) throws IOException {
         if (file.isFile()) {
             FileUtils.copyFile(file, backupFile);
         }
 
-        writeSubscribedFile(file, bytes);
+        writeSubscribedFile(file, bytes, codec, hashChunkSize);
         FileUtils.deleteQuietly(backupFile);
     }
 
@@ -122,4 +415,86 @@ public final class FileUtil {
     public static void writeCriticalFile(@Nonnull File file, @Nonnull byte[] bytes) throws IOException {
         writeCriticalFile(file, getCriticalBackupFile(file), bytes);
     }
+
+    @Contract("null, _, _ -> fail; _, null, _ -> fail; _, _, null -> fail")
+    public static void writeCriticalFile(
+            @Nonnull File file, @Nonnull byte[] bytes, @Nonnull CriticalFileCodec codec) throws IOException {
+        writeCriticalFile(file, getCriticalBackupFile(file), bytes, codec);
+    }
+
+    @Contract("null, _, _, _ -> fail; _, null, _, _ -> fail; _, _, null, _ -> fail")
+    public static void writeCriticalFile(@Nonnull File file, @Nonnull byte[] bytes,
+                                         @Nonnull CriticalFileCodec codec, int hashChunkSize) throws IOException {
+        writeCriticalFile(file, getCriticalBackupFile(file), bytes, codec, hashChunkSize);
+    }
+
+    /**
+     * Payload codec of a critical file.
+     */
+    public enum CriticalFileCodec {
+        /**
+         * Payload is stored as is.
+         */
+        NONE((byte) 0, Deflater.NO_COMPRESSION),
+
+        /**
+         * Payload is deflated with the fastest compression level. Good for large snapshots written often.
+         */
+        DEFLATE_FAST((byte) 1, Deflater.BEST_SPEED),
+
+        /**
+         * Payload is deflated with the default compression level.
+         */
+        DEFLATE((byte) 2, Deflater.DEFAULT_COMPRESSION);
+
+        private final byte id;
+        private final int level;
+
+        CriticalFileCodec(byte id, int level) {
+            this.id = id;
+            this.level = level;
+        }
+
+        @Nullable
+        private static CriticalFileCodec getById(byte id) {
+            for (CriticalFileCodec codec : values()) {
+                if (codec.id == id) {
+                    return codec;
+                }
+            }
+
+            return null;
+        }
+
+        private void encode(@Nonnull byte[] bytes, @Nonnull OutputStream outputStream) throws IOException {
+            Deflater deflater = new Deflater(level);
+            try {
+                DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(
+                        outputStream, deflater, SUBSCRIBED_FILE_BUFFER_SIZE
+                );
+                deflaterOutputStream.write(bytes);
+                deflaterOutputStream.finish();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Nullable
+        private byte[] decode(@Nonnull byte[] bytes, @Nonnegative int offset, @Nonnegative int length) {
+            if (this == NONE) {
+                return Arrays.copyOfRange(bytes, offset, offset + length);
+            }
+
+            Inflater inflater = new Inflater();
+            try {
+                return IOUtils.toByteArray(new InflaterInputStream(
+                        new ByteArrayInputStream(bytes, offset, length), inflater, SUBSCRIBED_FILE_BUFFER_SIZE
+                ));
+            } catch (IOException ignored) {
+                return null;
+            } finally {
+                inflater.end();
+            }
+        }
+    }
 }
@@ -7,7 +7,9 @@ import org.jetbrains.annotations.Contract;
 import ru.sladethe.common.io.*;
 import ru.sladethe.common.lang.ThreadUtil;
 import ru.sladethe.common.math.NumberUtil;
+import ru.sladethe.common.text.PercentEncodingUtil;
 import ru.sladethe.common.text.StringUtil;
+import ru.sladethe.common.text.UrlBuilder;
 import ru.sladethe.common.text.UrlUtil;
 import ru.sladethe.common.time.TimeUtil;
 
@@ -493,13 +495,25 @@ public final class HttpRequest {
     }
 
     private String appendGetParametersToUrl(String url) {
-        if (method == HttpMethod.GET || method == HttpMethod.HEAD) {
+        if ((method == HttpMethod.GET || method == HttpMethod.HEAD) && !parametersByName.isEmpty()) {
+            List<String> parameterParts = new ArrayList<>();
+
             for (Map.Entry<String, List<String>> parameterEntry : parametersByName.entrySet()) {
                 String parameterName = parameterEntry.getKey();
                 for (String parameterValue : parameterEntry.getValue()) {
-                    url = UrlUtil.appendParameterToUrl(url, parameterName, parameterValue);
+                    parameterParts.add(parameterName);
+                    parameterParts.add(parameterValue);
                 }
             }
+
+            // Parameters were inserted one by one right after '?', so they go to the URL in reverse order.
+            UrlBuilder urlBuilder = new UrlBuilder(url);
+
+            for (int partIndex = parameterParts.size() - 2; partIndex >= 0; partIndex -= 2) {
+                urlBuilder.appendParameter(parameterParts.get(partIndex), parameterParts.get(partIndex + 1));
+            }
+
+            return urlBuilder.build();
         }
 
         return url;
@@ -539,12 +553,8 @@ public final class HttpRequest {
                 throw new IllegalArgumentException(String.format("Value of parameter '%s' is null.", parameterName));
             }
 
-            try {
-                parameterCopies[parameterIndex] = URLEncoder.encode((String) parameterName, "UTF-8");
-                parameterCopies[parameterIndex + 1] = URLEncoder.encode(parameterValue.toString(), "UTF-8");
-            } catch (UnsupportedEncodingException e) {
-                throw new RuntimeException("UTF-8 is unsupported.", e);
-            }
+            parameterCopies[parameterIndex] = PercentEncodingUtil.encode((String) parameterName);
+            parameterCopies[parameterIndex + 1] = PercentEncodingUtil.encode(parameterValue.toString());
         }
 
         return parameterCopies;
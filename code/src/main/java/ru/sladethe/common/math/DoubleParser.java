@@ -0,0 +1,305 @@
+package ru.sladethe.common.math;
+
+import javax.annotation.Nonnull;
+import java.math.BigInteger;
+
+/**
+ * Parses decimal numbers to {@code double} with the same result as {@link Double#parseDouble(String)}.
+ * <p>
+ * Up to 19 significant digits are collected into a {@code long}. Small exact values are converted by a single
+ * multiplication or division (Clinger's fast path), others are rounded with the Eisel-Lemire algorithm using
+ * 128-bit approximations of the powers of five. The rare inputs which can't be rounded this way, as well as
+ * {@code NaN}, {@code Infinity}, hexadecimal and malformed numbers, are passed to {@link Double#parseDouble(String)},
+ * so the results and exceptions are always the same.
+ *
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+final class DoubleParser {
+    private static final int MAX_MANTISSA_DIGIT_COUNT = 19;
+    private static final int MAX_EXPONENT_ABSOLUTE_VALUE = 100_000;
+
+    private static final int MAX_FAST_PATH_EXPONENT = 22;
+    private static final long MAX_FAST_PATH_MANTISSA = 1L << 53;
+
+    private static final double[] POWERS_OF_TEN = {
+            1.0E0, 1.0E1, 1.0E2, 1.0E3, 1.0E4, 1.0E5, 1.0E6, 1.0E7, 1.0E8, 1.0E9, 1.0E10, 1.0E11,
+            1.0E12, 1.0E13, 1.0E14, 1.0E15, 1.0E16, 1.0E17, 1.0E18, 1.0E19, 1.0E20, 1.0E21, 1.0E22
+    };
+
+    private static final int MIN_POWER_OF_FIVE_EXPONENT = -342;
+    private static final int MAX_POWER_OF_FIVE_EXPONENT = 308;
+
+    private static final int MIN_ROUND_TO_EVEN_EXPONENT = -4;
+    private static final int MAX_ROUND_TO_EVEN_EXPONENT = 23;
+
+    private static final int MANTISSA_EXPLICIT_BIT_COUNT = 52;
+    private static final int EXPONENT_BIAS = 1023;
+    private static final int INFINITE_POWER = 0x7FF;
+    private static final long INFINITY_BITS = (long) INFINITE_POWER << MANTISSA_EXPLICIT_BIT_COUNT;
+
+    /**
+     * Returned by {@link #computeBits(long, int)} when the number can't be rounded without the fallback.
+     */
+    private static final long NO_BITS = -1L;
+
+    private DoubleParser() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param value the char sequence containing the number without surrounding whitespace
+     * @param start the start index of the number, inclusive
+     * @param end   the end index of the number, exclusive
+     * @return the parsed value
+     * @throws NumberFormatException if the range does not contain a parsable number
+     */
+    @SuppressWarnings("OverlyComplexMethod")
+    static double parse(@Nonnull CharSequence value, int start, int end) {
+        int i = start;
+        boolean negative = false;
+
+        if (i < end) {
+            char c = value.charAt(i);
+            if (c == '-' || c == '+') {
+                negative = c == '-';
+                ++i;
+            }
+        }
+
+        long mantissa = 0L;
+        int mantissaDigitCount = 0;
+        int digitCount = 0;
+        long exponent = 0L;
+        boolean truncated = false;
+
+        for (char c; i < end && (c = value.charAt(i)) >= '0' && c <= '9'; ++i, ++digitCount) {
+            if (mantissaDigitCount < MAX_MANTISSA_DIGIT_COUNT) {
+                if (mantissa != 0L || c != '0') {
+                    mantissa = mantissa * 10L + c - '0';
+                    ++mantissaDigitCount;
+                }
+            } else {
+                ++exponent;
+                truncated |= c != '0';
+            }
+        }
+
+        if (i < end && value.charAt(i) == '.') {
+            for (char c; ++i < end && (c = value.charAt(i)) >= '0' && c <= '9'; ++digitCount) {
+                if (mantissaDigitCount < MAX_MANTISSA_DIGIT_COUNT) {
+                    if (mantissa != 0L || c != '0') {
+                        mantissa = mantissa * 10L + c - '0';
+                        ++mantissaDigitCount;
+                    }
+                    --exponent;
+                } else {
+                    truncated |= c != '0';
+                }
+            }
+        }
+
+        if (digitCount == 0) {
+            return fallback(value, start, end);
+        }
+
+        if (i < end && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            boolean negativeExponent = false;
+
+            if (++i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                negativeExponent = value.charAt(i++) == '-';
+            }
+
+            int exponentStart = i;
+            long explicitExponent = 0L;
+
+            for (char c; i < end && (c = value.charAt(i)) >= '0' && c <= '9'; ++i) {
+                if (explicitExponent < MAX_EXPONENT_ABSOLUTE_VALUE) {
+                    explicitExponent = explicitExponent * 10L + c - '0';
+                }
+            }
+
+            if (i == exponentStart) {
+                return fallback(value, start, end);
+            }
+
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (i < end) {
+            char c = value.charAt(i);
+            if (c == 'd' || c == 'D' || c == 'f' || c == 'F') {
+                ++i;
+            }
+        }
+
+        if (i != end) {
+            return fallback(value, start, end);
+        }
+
+        double result;
+
+        if (mantissa == 0L) {
+            result = 0.0D;
+        } else if (!truncated && exponent >= -MAX_FAST_PATH_EXPONENT && exponent <= MAX_FAST_PATH_EXPONENT
+                && mantissa >= 0L && mantissa <= MAX_FAST_PATH_MANTISSA) {
+            // Both operands are exact, so the single operation is rounded correctly.
+            result = exponent < 0L
+                    ? (double) mantissa / POWERS_OF_TEN[(int) -exponent]
+                    : (double) mantissa * POWERS_OF_TEN[(int) exponent];
+        } else {
+            int clampedExponent = (int) Math.max(Math.min(exponent, Integer.MAX_VALUE), Integer.MIN_VALUE);
+            long bits = computeBits(mantissa, clampedExponent);
+
+            // The digits are truncated, so the exact value is between mantissa and mantissa + 1.
+            if (truncated && bits != NO_BITS && bits != computeBits(mantissa + 1L, clampedExponent)) {
+                bits = NO_BITS;
+            }
+
+            if (bits == NO_BITS) {
+                return fallback(value, start, end);
+            }
+
+            result = Double.longBitsToDouble(bits);
+        }
+
+        return negative ? -result : result;
+    }
+
+    /**
+     * Rounds {@code mantissa * 10^exponent} to the nearest double using the Eisel-Lemire algorithm.
+     *
+     * @param mantissa unsigned non-zero decimal mantissa
+     * @param exponent decimal exponent
+     * @return bits of the positive double or {@link #NO_BITS} if the result is ambiguous
+     */
+    private static long computeBits(long mantissa, int exponent) {
+        if (exponent < MIN_POWER_OF_FIVE_EXPONENT) {
+            return 0L;
+        }
+
+        if (exponent > MAX_POWER_OF_FIVE_EXPONENT) {
+            return INFINITY_BITS;
+        }
+
+        int leadingZeroCount = Long.numberOfLeadingZeros(mantissa);
+        long normalizedMantissa = mantissa << leadingZeroCount;
+
+        int powerIndex = exponent - MIN_POWER_OF_FIVE_EXPONENT;
+        long powerHigh = PowersOfFive.HIGH[powerIndex];
+        long productHigh = multiplyHigh(normalizedMantissa, powerHigh);
+        long productLow = normalizedMantissa * powerHigh;
+
+        // 9 = 64 - (52 + 3) low bits of the high half are not enough to round, the low half of the power is needed.
+        if ((productHigh & 0x1FFL) == 0x1FFL) {
+            long secondProductHigh = multiplyHigh(normalizedMantissa, PowersOfFive.LOW[powerIndex]);
+            productLow += secondProductHigh;
+
+            if (Long.compareUnsigned(secondProductHigh, productLow) > 0) {
+                ++productHigh;
+            }
+
+            if (productLow == -1L && (exponent < -27 || exponent > 55)) {
+                return NO_BITS;
+            }
+        }
+
+        int upperBit = (int) (productHigh >>> 63);
+        int shift = upperBit + 64 - MANTISSA_EXPLICIT_BIT_COUNT - 3;
+        long resultMantissa = productHigh >>> shift;
+        int power2 = (((152170 + 65536) * exponent) >> 16) + 63 + upperBit - leadingZeroCount + EXPONENT_BIAS;
+
+        if (power2 <= 0) {
+            if (-power2 + 1 >= 64) {
+                return 0L;
+            }
+
+            resultMantissa >>>= -power2 + 1;
+            resultMantissa += resultMantissa & 1L;
+            resultMantissa >>>= 1;
+
+            // The rounded mantissa may become normal, then its implicit bit is the lowest bit of the exponent.
+            return resultMantissa;
+        }
+
+        // The product is exactly halfway between two doubles, round to even.
+        if (Long.compareUnsigned(productLow, 1L) <= 0
+                && exponent >= MIN_ROUND_TO_EVEN_EXPONENT && exponent <= MAX_ROUND_TO_EVEN_EXPONENT
+                && (resultMantissa & 3L) == 1L && resultMantissa << shift == productHigh) {
+            resultMantissa &= ~1L;
+        }
+
+        resultMantissa += resultMantissa & 1L;
+        resultMantissa >>>= 1;
+
+        if (resultMantissa >= 2L << MANTISSA_EXPLICIT_BIT_COUNT) {
+            resultMantissa = 1L << MANTISSA_EXPLICIT_BIT_COUNT;
+            ++power2;
+        }
+
+        resultMantissa &= ~(1L << MANTISSA_EXPLICIT_BIT_COUNT);
+
+        if (power2 >= INFINITE_POWER) {
+            return INFINITY_BITS;
+        }
+
+        return (long) power2 << MANTISSA_EXPLICIT_BIT_COUNT | resultMantissa;
+    }
+
+    /**
+     * @return the high half of the unsigned 128-bit product
+     */
+    private static long multiplyHigh(long a, long b) {
+        long aLow = a & 0xFFFFFFFFL;
+        long aHigh = a >>> 32;
+        long bLow = b & 0xFFFFFFFFL;
+        long bHigh = b >>> 32;
+
+        long lowLow = aLow * bLow;
+        long highLow = aHigh * bLow;
+        long lowHigh = aLow * bHigh;
+
+        long cross = (lowLow >>> 32) + (highLow & 0xFFFFFFFFL) + lowHigh;
+        return (highLow >>> 32) + (cross >>> 32) + aHigh * bHigh;
+    }
+
+    private static double fallback(@Nonnull CharSequence value, int start, int end) {
+        return Double.parseDouble(value.subSequence(start, end).toString());
+    }
+
+    /**
+     * Truncated 128-bit mantissas of the powers of five from {@code 5^-342} to {@code 5^308}. The table is built
+     * on the first use of the slow path.
+     */
+    private static final class PowersOfFive {
+        private static final long[] HIGH = new long[MAX_POWER_OF_FIVE_EXPONENT - MIN_POWER_OF_FIVE_EXPONENT + 1];
+        private static final long[] LOW = new long[MAX_POWER_OF_FIVE_EXPONENT - MIN_POWER_OF_FIVE_EXPONENT + 1];
+
+        private PowersOfFive() {
+            throw new UnsupportedOperationException();
+        }
+
+        static {
+            BigInteger five = BigInteger.valueOf(5L);
+
+            for (int exponent = MIN_POWER_OF_FIVE_EXPONENT; exponent <= MAX_POWER_OF_FIVE_EXPONENT; ++exponent) {
+                BigInteger power;
+
+                if (exponent >= 0) {
+                    power = five.pow(exponent);
+                    int bitLength = power.bitLength();
+                    power = bitLength < 128 ? power.shiftLeft(128 - bitLength) : power.shiftRight(bitLength - 128);
+                } else {
+                    // The reciprocal is rounded up, so the approximation is never less than the exact value.
+                    BigInteger divisor = five.pow(-exponent);
+                    int bitLength = divisor.bitLength();
+                    int shift = exponent >= -27 ? bitLength + 127 : 2 * bitLength + 128;
+                    power = BigInteger.ONE.shiftLeft(shift).divide(divisor).add(BigInteger.ONE);
+                    power = power.shiftRight(Math.max(power.bitLength() - 128, 0));
+                }
+
+                HIGH[exponent - MIN_POWER_OF_FIVE_EXPONENT] = power.shiftRight(64).longValue();
+                LOW[exponent - MIN_POWER_OF_FIVE_EXPONENT] = power.longValue();
+            }
+        }
+    }
+}
@@ -3,7 +3,11 @@ package ru.sladethe.common.math;
 import org.jetbrains.annotations.Contract;
 import ru.sladethe.common.text.StringUtil;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.IntStream;
 
 import static java.lang.StrictMath.*;
 
@@ -12,6 +16,15 @@ import static java.lang.StrictMath.*;
  */
 @SuppressWarnings("WeakerAccess")
 public final class NumberUtil {
+    /**
+     * Minimal number of values to convert in parallel.
+     */
+    private static final int PARALLEL_CONVERSION_THRESHOLD = 1 << 14;
+
+    private static final int PARALLEL_CONVERSION_BLOCK_SIZE = 1 << 12;
+
+    private static final int MISMATCH_BLOCK_SIZE = 256;
+
     private NumberUtil() {
         throw new UnsupportedOperationException();
     }
@@ -57,7 +70,12 @@ public final class NumberUtil {
     @Contract("null -> null; !null -> !null")
     @Nullable
     public static Byte toByte(@Nullable String value) {
-        return toByte(toDouble(value));
+        if (value == null) {
+            return null;
+        }
+
+        byte result = toByte(value, 0, value.length(), Byte.MIN_VALUE);
+        return result == Byte.MIN_VALUE ? toByte(toDouble(value)) : result;
     }
 
     public static byte toByte(short value) {
@@ -171,7 +189,12 @@ public final class NumberUtil {
     @Contract("null -> null; !null -> !null")
     @Nullable
     public static Short toShort(@Nullable String value) {
-        return toShort(toDouble(value));
+        if (value == null) {
+            return null;
+        }
+
+        short result = toShort(value, 0, value.length(), Short.MIN_VALUE);
+        return result == Short.MIN_VALUE ? toShort(toDouble(value)) : result;
     }
 
     public static short toShort(int value) {
@@ -271,7 +294,12 @@ public final class NumberUtil {
     @Contract("null -> null; !null -> !null")
     @Nullable
     public static Integer toInt(@Nullable String value) {
-        return toInt(toDouble(value));
+        if (value == null) {
+            return null;
+        }
+
+        int result = toInt(value, 0, value.length(), Integer.MIN_VALUE);
+        return result == Integer.MIN_VALUE ? toInt(toDouble(value)) : result;
     }
 
     public static int toInt(long value) {
@@ -354,10 +382,23 @@ public final class NumberUtil {
         return toLong(value.toString());
     }
 
+    /**
+     * Integers without a fractional part or an exponent are parsed exactly, so values above {@code 2^53} don't lose
+     * precision. Other numbers are converted through {@link #toDouble(String)} and then by {@link #toLong(double)}.
+     *
+     * @param value the string to convert
+     * @return the converted value
+     * @throws IllegalArgumentException if the string can't be converted
+     */
     @Contract("null -> null; !null -> !null")
     @Nullable
     public static Long toLong(@Nullable String value) {
-        return toLong(toDouble(value));
+        if (value == null) {
+            return null;
+        }
+
+        long result = toLong(value, 0, value.length(), Long.MIN_VALUE);
+        return result == Long.MIN_VALUE ? toLong(toDouble(value)) : result;
     }
 
     public static long toLong(float value) {
@@ -487,7 +528,335 @@ public final class NumberUtil {
     @Contract("null -> null; !null -> !null")
     @Nullable
     public static Double toDouble(@Nullable String value) {
-        return value == null ? null : Double.parseDouble(StringUtil.trim(value));
+        return value == null ? null : toDouble(value, 0, value.length());
+    }
+
+    /**
+     * Parses the range of the char sequence the same way as {@link #toDouble(String)} does. Decimal numbers
+     * are parsed without creating intermediate objects, the result is the same as of
+     * {@link Double#parseDouble(String)}.
+     *
+     * @param value  the char sequence containing the number
+     * @param offset the start index of the number
+     * @param length the length of the number
+     * @return the parsed value
+     * @throws NumberFormatException if the range does not contain a parsable number
+     */
+    @Contract(pure = true)
+    public static double toDouble(@Nonnull CharSequence value, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+
+        start = skipLeadingWhitespace(value, start, end);
+        end = skipTrailingWhitespace(value, start, end);
+
+        return DoubleParser.parse(value, start, end);
+    }
+
+    /**
+     * Parses the range of the byte array containing the number in ASCII.
+     *
+     * @param bytes  the byte array containing the number
+     * @param offset the start index of the number
+     * @param length the length of the number
+     * @return the parsed value
+     * @throws NumberFormatException if the range does not contain a parsable number
+     * @see #toDouble(CharSequence, int, int)
+     */
+    @Contract(pure = true)
+    public static double toDouble(@Nonnull byte[] bytes, int offset, int length) {
+        checkRange(bytes.length, offset, length);
+        return toDouble(new AsciiCharSequence(bytes), offset, length);
+    }
+
+    /**
+     * Parses the range of the char sequence the same way as {@link #toByte(String)} does, but without creating
+     * intermediate objects.
+     *
+     * @see #toLong(CharSequence, int, int, long)
+     */
+    @Contract(pure = true)
+    public static byte toByte(@Nonnull CharSequence value, int offset, int length, byte defaultValue) {
+        return (byte) parseInteger(value, offset, offset + length, Byte.MIN_VALUE, Byte.MAX_VALUE, defaultValue);
+    }
+
+    /**
+     * Parses the range of the char sequence the same way as {@link #toShort(String)} does, but without creating
+     * intermediate objects.
+     *
+     * @see #toLong(CharSequence, int, int, long)
+     */
+    @Contract(pure = true)
+    public static short toShort(@Nonnull CharSequence value, int offset, int length, short defaultValue) {
+        return (short) parseInteger(value, offset, offset + length, Short.MIN_VALUE, Short.MAX_VALUE, defaultValue);
+    }
+
+    /**
+     * Parses the range of the char sequence the same way as {@link #toInt(String)} does, but without creating
+     * intermediate objects.
+     *
+     * @see #toLong(CharSequence, int, int, long)
+     */
+    @Contract(pure = true)
+    public static int toInt(@Nonnull CharSequence value, int offset, int length, int defaultValue) {
+        return (int) parseInteger(value, offset, offset + length, Integer.MIN_VALUE, Integer.MAX_VALUE, defaultValue);
+    }
+
+    /**
+     * Parses the range of the char sequence the same way as {@link #toLong(String)} does, but without creating
+     * intermediate objects. Surrounding whitespace is ignored. Integers without a fractional part or an exponent
+     * are parsed exactly, so values above {@code 2^53} don't lose precision, values out of range are rejected.
+     * <p>
+     * Numbers with a fractional part or an exponent, hexadecimal and suffixed forms are converted through
+     * {@code double} as before and then truncated: {@code " -1.9 "} is parsed as {@code -1}, but
+     * {@code "0.99999999999999999"} is parsed as {@code 1}, since it is rounded to {@code 1.0D}.
+     *
+     * @param value        the char sequence containing the number
+     * @param offset       the start index of the number
+     * @param length       the length of the number
+     * @param defaultValue the value to return if the range does not contain a number or the number is out of range
+     * @return the parsed value or {@code defaultValue}
+     */
+    @Contract(pure = true)
+    public static long toLong(@Nonnull CharSequence value, int offset, int length, long defaultValue) {
+        return parseInteger(value, offset, offset + length, Long.MIN_VALUE, Long.MAX_VALUE, defaultValue);
+    }
+
+    /**
+     * Converts the values the same way as {@link #toInt(Object)} does. The type of the first non-null element
+     * is detected once and elements of this type are converted in a tight loop without the {@code instanceof}
+     * chain, other elements are converted one by one.
+     *
+     * @param values the values to convert
+     * @return the converted values
+     * @throws IllegalArgumentException if any value is {@code null} or can't be converted
+     */
+    @Nonnull
+    public static int[] toIntArray(@Nonnull Object[] values) {
+        int[] result = new int[values.length];
+        convertToInts(values, 0, values.length, result, false, 0);
+        return result;
+    }
+
+    /**
+     * Converts the values the same way as {@link #toInt(Object)} does, {@code null} values are replaced.
+     *
+     * @param values    the values to convert
+     * @param nullValue the replacement of {@code null} values
+     * @return the converted values
+     * @throws IllegalArgumentException if any value can't be converted
+     * @see #toIntArray(Object[])
+     */
+    @Nonnull
+    public static int[] toIntArray(@Nonnull Object[] values, int nullValue) {
+        int[] result = new int[values.length];
+        convertToInts(values, 0, values.length, result, true, nullValue);
+        return result;
+    }
+
+    /**
+     * @see #toIntArray(Object[])
+     */
+    @Nonnull
+    public static int[] toIntArray(@Nonnull List<?> values) {
+        return toIntArray(values.toArray());
+    }
+
+    /**
+     * @see #toIntArray(Object[], int)
+     */
+    @Nonnull
+    public static int[] toIntArray(@Nonnull List<?> values, int nullValue) {
+        return toIntArray(values.toArray(), nullValue);
+    }
+
+    /**
+     * Works the same way as {@link #toIntArray(Object[])}, but uses all available processors. The values are split
+     * into blocks and the element type is detected in each block separately. Small arrays are converted sequentially.
+     *
+     * @param values the values to convert
+     * @return the converted values
+     * @throws IllegalArgumentException if any value is {@code null} or can't be converted
+     */
+    @Nonnull
+    public static int[] parallelToIntArray(@Nonnull Object[] values) {
+        int[] result = new int[values.length];
+        convertInParallel(values.length, (from, to) -> convertToInts(values, from, to, result, false, 0));
+        return result;
+    }
+
+    /**
+     * Works the same way as {@link #toIntArray(Object[], int)}, but uses all available processors.
+     *
+     * @param values    the values to convert
+     * @param nullValue the replacement of {@code null} values
+     * @return the converted values
+     * @throws IllegalArgumentException if any value can't be converted
+     * @see #parallelToIntArray(Object[])
+     */
+    @Nonnull
+    public static int[] parallelToIntArray(@Nonnull Object[] values, int nullValue) {
+        int[] result = new int[values.length];
+        convertInParallel(values.length, (from, to) -> convertToInts(values, from, to, result, true, nullValue));
+        return result;
+    }
+
+    /**
+     * Converts the values the same way as {@link #toLong(Object)} does. The type of the first non-null element
+     * is detected once and elements of this type are converted in a tight loop without the {@code instanceof}
+     * chain, other elements are converted one by one.
+     *
+     * @param values the values to convert
+     * @return the converted values
+     * @throws IllegalArgumentException if any value is {@code null} or can't be converted
+     */
+    @Nonnull
+    public static long[] toLongArray(@Nonnull Object[] values) {
+        long[] result = new long[values.length];
+        convertToLongs(values, 0, values.length, result, false, 0L);
+        return result;
+    }
+
+    /**
+     * Converts the values the same way as {@link #toLong(Object)} does, {@code null} values are replaced.
+     *
+     * @param values    the values to convert
+     * @param nullValue the replacement of {@code null} values
+     * @return the converted values
+     * @throws IllegalArgumentException if any value can't be converted
+     * @see #toLongArray(Object[])
+     */
+    @Nonnull
+    public static long[] toLongArray(@Nonnull Object[] values, long nullValue) {
+        long[] result = new long[values.length];
+        convertToLongs(values, 0, values.length, result, true, nullValue);
+        return result;
+    }
+
+    /**
+     * @see #toLongArray(Object[])
+     */
+    @Nonnull
+    public static long[] toLongArray(@Nonnull List<?> values) {
+        return toLongArray(values.toArray());
+    }
+
+    /**
+     * @see #toLongArray(Object[], long)
+     */
+    @Nonnull
+    public static long[] toLongArray(@Nonnull List<?> values, long nullValue) {
+        return toLongArray(values.toArray(), nullValue);
+    }
+
+    /**
+     * Works the same way as {@link #toLongArray(Object[])}, but uses all available processors. The values are split
+     * into blocks and the element type is detected in each block separately. Small arrays are converted sequentially.
+     *
+     * @param values the values to convert
+     * @return the converted values
+     * @throws IllegalArgumentException if any value is {@code null} or can't be converted
+     */
+    @Nonnull
+    public static long[] parallelToLongArray(@Nonnull Object[] values) {
+        long[] result = new long[values.length];
+        convertInParallel(values.length, (from, to) -> convertToLongs(values, from, to, result, false, 0L));
+        return result;
+    }
+
+    /**
+     * Works the same way as {@link #toLongArray(Object[], long)}, but uses all available processors.
+     *
+     * @param values    the values to convert
+     * @param nullValue the replacement of {@code null} values
+     * @return the converted values
+     * @throws IllegalArgumentException if any value can't be converted
+     * @see #parallelToLongArray(Object[])
+     */
+    @Nonnull
+    public static long[] parallelToLongArray(@Nonnull Object[] values, long nullValue) {
+        long[] result = new long[values.length];
+        convertInParallel(values.length, (from, to) -> convertToLongs(values, from, to, result, true, nullValue));
+        return result;
+    }
+
+    /**
+     * Converts the values the same way as {@link #toDouble(Object)} does. The type of the first non-null element
+     * is detected once and elements of this type are converted in a tight loop without the {@code instanceof}
+     * chain, other elements are converted one by one.
+     *
+     * @param values the values to convert
+     * @return the converted values
+     * @throws IllegalArgumentException if any value is {@code null} or can't be converted
+     */
+    @Nonnull
+    public static double[] toDoubleArray(@Nonnull Object[] values) {
+        double[] result = new double[values.length];
+        convertToDoubles(values, 0, values.length, result, false, 0.0D);
+        return result;
+    }
+
+    /**
+     * Converts the values the same way as {@link #toDouble(Object)} does, {@code null} values are replaced.
+     *
+     * @param values    the values to convert
+     * @param nullValue the replacement of {@code null} values
+     * @return the converted values
+     * @throws IllegalArgumentException if any value can't be converted
+     * @see #toDoubleArray(Object[])
+     */
+    @Nonnull
+    public static double[] toDoubleArray(@Nonnull Object[] values, double nullValue) {
+        double[] result = new double[values.length];
+        convertToDoubles(values, 0, values.length, result, true, nullValue);
+        return result;
+    }
+
+    /**
+     * @see #toDoubleArray(Object[])
+     */
+    @Nonnull
+    public static double[] toDoubleArray(@Nonnull List<?> values) {
+        return toDoubleArray(values.toArray());
+    }
+
+    /**
+     * @see #toDoubleArray(Object[], double)
+     */
+    @Nonnull
+    public static double[] toDoubleArray(@Nonnull List<?> values, double nullValue) {
+        return toDoubleArray(values.toArray(), nullValue);
+    }
+
+    /**
+     * Works the same way as {@link #toDoubleArray(Object[])}, but uses all available processors. The values are split
+     * into blocks and the element type is detected in each block separately. Small arrays are converted sequentially.
+     *
+     * @param values the values to convert
+     * @return the converted values
+     * @throws IllegalArgumentException if any value is {@code null} or can't be converted
+     */
+    @Nonnull
+    public static double[] parallelToDoubleArray(@Nonnull Object[] values) {
+        double[] result = new double[values.length];
+        convertInParallel(values.length, (from, to) -> convertToDoubles(values, from, to, result, false, 0.0D));
+        return result;
+    }
+
+    /**
+     * Works the same way as {@link #toDoubleArray(Object[], double)}, but uses all available processors.
+     *
+     * @param values    the values to convert
+     * @param nullValue the replacement of {@code null} values
+     * @return the converted values
+     * @throws IllegalArgumentException if any value can't be converted
+     * @see #parallelToDoubleArray(Object[])
+     */
+    @Nonnull
+    public static double[] parallelToDoubleArray(@Nonnull Object[] values, double nullValue) {
+        double[] result = new double[values.length];
+        convertInParallel(values.length, (from, to) -> convertToDoubles(values, from, to, result, true, nullValue));
+        return result;
     }
 
     @Contract(value = "null, null -> true; null, !null -> false; !null, null -> false", pure = true)
@@ -702,6 +1071,470 @@ public final class NumberUtil {
         return Double.compare(round(numberA * factor) / factor, round(numberB * factor) / factor) == 0;
     }
 
+    /**
+     * Compares the arrays element by element the same way as {@link #nearlyEquals(float, float, float)} does.
+     *
+     * @param a       the first array
+     * @param b       the second array of the same length
+     * @param epsilon the maximal allowed difference
+     * @return the index of the first mismatch or {@code -1} if all elements are equal
+     * @throws IllegalArgumentException if the arrays have different lengths
+     * @see #nearlyEqualsMismatch(float[], int, float[], int, int, float)
+     */
+    @Contract(pure = true)
+    public static int nearlyEqualsMismatch(@Nonnull float[] a, @Nonnull float[] b, float epsilon) {
+        checkSameLength(a.length, b.length);
+        return nearlyEqualsMismatch(a, 0, b, 0, a.length, epsilon);
+    }
+
+    /**
+     * Compares the ranges element by element the same way as {@link #nearlyEquals(float, float, float)} does, the
+     * semantics of {@code NaN} and infinite values are the same. The ranges are checked in blocks: a block is scanned
+     * by a simple loop checking {@code abs(a - b) <= epsilon} without branches, and only blocks containing possible
+     * mismatches are checked element by element.
+     *
+     * @param a       the first array
+     * @param aOffset the start index of the range in the first array
+     * @param b       the second array
+     * @param bOffset the start index of the range in the second array
+     * @param length  the length of the ranges
+     * @param epsilon the maximal allowed difference
+     * @return the index of the first mismatch relative to the start of the ranges or {@code -1} if all elements
+     * are equal
+     * @throws IndexOutOfBoundsException if a range is out of the array bounds
+     */
+    @Contract(pure = true)
+    public static int nearlyEqualsMismatch(
+            @Nonnull float[] a, int aOffset, @Nonnull float[] b, int bOffset, int length, float epsilon) {
+        checkRange(a.length, aOffset, length);
+        checkRange(b.length, bOffset, length);
+
+        // The quick check never accepts a mismatch if the epsilon is finite, otherwise it accepts nothing.
+        float quickEpsilon = epsilon < Float.POSITIVE_INFINITY ? epsilon : -1.0f;
+
+        for (int blockStart = 0; blockStart < length; blockStart += MISMATCH_BLOCK_SIZE) {
+            int blockLength = min(MISMATCH_BLOCK_SIZE, length - blockStart);
+            int quickMismatchCount = countQuickNearlyEqualsMismatches(
+                    a, aOffset + blockStart, b, bOffset + blockStart, blockLength, quickEpsilon
+            );
+            if (quickMismatchCount == 0) {
+                continue;
+            }
+
+            for (int i = blockStart, blockEnd = blockStart + blockLength; i < blockEnd; ++i) {
+                if (!nearlyEquals(a[aOffset + i], b[bOffset + i], epsilon)) {
+                    return i;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Compares the arrays element by element the same way as {@link #nearlyEquals(float, float, float)} does.
+     *
+     * @param a       the first array
+     * @param b       the second array of the same length
+     * @param epsilon the maximal allowed difference
+     * @return the number of mismatches
+     * @throws IllegalArgumentException if the arrays have different lengths
+     * @see #nearlyEqualsMismatch(float[], int, float[], int, int, float)
+     */
+    @Contract(pure = true)
+    public static int countNearlyEqualsMismatches(@Nonnull float[] a, @Nonnull float[] b, float epsilon) {
+        checkSameLength(a.length, b.length);
+        return countNearlyEqualsMismatches(a, 0, b, 0, a.length, epsilon);
+    }
+
+    /**
+     * Compares the ranges element by element the same way as {@link #nearlyEquals(float, float, float)} does.
+     *
+     * @param a       the first array
+     * @param aOffset the start index of the range in the first array
+     * @param b       the second array
+     * @param bOffset the start index of the range in the second array
+     * @param length  the length of the ranges
+     * @param epsilon the maximal allowed difference
+     * @return the number of mismatches
+     * @throws IndexOutOfBoundsException if a range is out of the array bounds
+     * @see #nearlyEqualsMismatch(float[], int, float[], int, int, float)
+     */
+    @Contract(pure = true)
+    public static int countNearlyEqualsMismatches(
+            @Nonnull float[] a, int aOffset, @Nonnull float[] b, int bOffset, int length, float epsilon) {
+        checkRange(a.length, aOffset, length);
+        checkRange(b.length, bOffset, length);
+
+        // The quick check never accepts a mismatch if the epsilon is finite, otherwise it accepts nothing.
+        float quickEpsilon = epsilon < Float.POSITIVE_INFINITY ? epsilon : -1.0f;
+
+        int count = 0;
+
+        for (int blockStart = 0; blockStart < length; blockStart += MISMATCH_BLOCK_SIZE) {
+            int blockLength = min(MISMATCH_BLOCK_SIZE, length - blockStart);
+            int quickMismatchCount = countQuickNearlyEqualsMismatches(
+                    a, aOffset + blockStart, b, bOffset + blockStart, blockLength, quickEpsilon
+            );
+            if (quickMismatchCount == 0) {
+                continue;
+            }
+
+            for (int i = blockStart, blockEnd = blockStart + blockLength; i < blockEnd; ++i) {
+                if (!nearlyEquals(a[aOffset + i], b[bOffset + i], epsilon)) {
+                    ++count;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Compares the arrays element by element the same way as {@link #nearlyEquals(double, double, double)} does.
+     *
+     * @param a       the first array
+     * @param b       the second array of the same length
+     * @param epsilon the maximal allowed difference
+     * @return the index of the first mismatch or {@code -1} if all elements are equal
+     * @throws IllegalArgumentException if the arrays have different lengths
+     * @see #nearlyEqualsMismatch(double[], int, double[], int, int, double)
+     */
+    @Contract(pure = true)
+    public static int nearlyEqualsMismatch(@Nonnull double[] a, @Nonnull double[] b, double epsilon) {
+        checkSameLength(a.length, b.length);
+        return nearlyEqualsMismatch(a, 0, b, 0, a.length, epsilon);
+    }
+
+    /**
+     * Compares the ranges element by element the same way as {@link #nearlyEquals(double, double, double)} does, the
+     * semantics of {@code NaN} and infinite values are the same. The ranges are checked in blocks: a block is scanned
+     * by a simple loop checking {@code abs(a - b) <= epsilon} without branches, and only blocks containing possible
+     * mismatches are checked element by element.
+     *
+     * @param a       the first array
+     * @param aOffset the start index of the range in the first array
+     * @param b       the second array
+     * @param bOffset the start index of the range in the second array
+     * @param length  the length of the ranges
+     * @param epsilon the maximal allowed difference
+     * @return the index of the first mismatch relative to the start of the ranges or {@code -1} if all elements
+     * are equal
+     * @throws IndexOutOfBoundsException if a range is out of the array bounds
+     */
+    @Contract(pure = true)
+    public static int nearlyEqualsMismatch(
+            @Nonnull double[] a, int aOffset, @Nonnull double[] b, int bOffset, int length, double epsilon) {
+        checkRange(a.length, aOffset, length);
+        checkRange(b.length, bOffset, length);
+
+        // The quick check never accepts a mismatch if the epsilon is finite, otherwise it accepts nothing.
+        double quickEpsilon = epsilon < Double.POSITIVE_INFINITY ? epsilon : -1.0D;
+
+        for (int blockStart = 0; blockStart < length; blockStart += MISMATCH_BLOCK_SIZE) {
+            int blockLength = min(MISMATCH_BLOCK_SIZE, length - blockStart);
+            int quickMismatchCount = countQuickNearlyEqualsMismatches(
+                    a, aOffset + blockStart, b, bOffset + blockStart, blockLength, quickEpsilon
+            );
+            if (quickMismatchCount == 0) {
+                continue;
+            }
+
+            for (int i = blockStart, blockEnd = blockStart + blockLength; i < blockEnd; ++i) {
+                if (!nearlyEquals(a[aOffset + i], b[bOffset + i], epsilon)) {
+                    return i;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Compares the arrays element by element the same way as {@link #nearlyEquals(double, double, double)} does.
+     *
+     * @param a       the first array
+     * @param b       the second array of the same length
+     * @param epsilon the maximal allowed difference
+     * @return the number of mismatches
+     * @throws IllegalArgumentException if the arrays have different lengths
+     * @see #nearlyEqualsMismatch(double[], int, double[], int, int, double)
+     */
+    @Contract(pure = true)
+    public static int countNearlyEqualsMismatches(@Nonnull double[] a, @Nonnull double[] b, double epsilon) {
+        checkSameLength(a.length, b.length);
+        return countNearlyEqualsMismatches(a, 0, b, 0, a.length, epsilon);
+    }
+
+    /**
+     * Compares the ranges element by element the same way as {@link #nearlyEquals(double, double, double)} does.
+     *
+     * @param a       the first array
+     * @param aOffset the start index of the range in the first array
+     * @param b       the second array
+     * @param bOffset the start index of the range in the second array
+     * @param length  the length of the ranges
+     * @param epsilon the maximal allowed difference
+     * @return the number of mismatches
+     * @throws IndexOutOfBoundsException if a range is out of the array bounds
+     * @see #nearlyEqualsMismatch(double[], int, double[], int, int, double)
+     */
+    @Contract(pure = true)
+    public static int countNearlyEqualsMismatches(
+            @Nonnull double[] a, int aOffset, @Nonnull double[] b, int bOffset, int length, double epsilon) {
+        checkRange(a.length, aOffset, length);
+        checkRange(b.length, bOffset, length);
+
+        // The quick check never accepts a mismatch if the epsilon is finite, otherwise it accepts nothing.
+        double quickEpsilon = epsilon < Double.POSITIVE_INFINITY ? epsilon : -1.0D;
+
+        int count = 0;
+
+        for (int blockStart = 0; blockStart < length; blockStart += MISMATCH_BLOCK_SIZE) {
+            int blockLength = min(MISMATCH_BLOCK_SIZE, length - blockStart);
+            int quickMismatchCount = countQuickNearlyEqualsMismatches(
+                    a, aOffset + blockStart, b, bOffset + blockStart, blockLength, quickEpsilon
+            );
+            if (quickMismatchCount == 0) {
+                continue;
+            }
+
+            for (int i = blockStart, blockEnd = blockStart + blockLength; i < blockEnd; ++i) {
+                if (!nearlyEquals(a[aOffset + i], b[bOffset + i], epsilon)) {
+                    ++count;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Compares the arrays element by element the same way as {@link #roundEquals(float, float, float)} does.
+     *
+     * @param a       the first array
+     * @param b       the second array of the same length
+     * @param factor  the rounding factor
+     * @return the index of the first mismatch or {@code -1} if all elements are equal
+     * @throws IllegalArgumentException if the arrays have different lengths
+     * @see #roundEqualsMismatch(float[], int, float[], int, int, float)
+     */
+    @Contract(pure = true)
+    public static int roundEqualsMismatch(@Nonnull float[] a, @Nonnull float[] b, float factor) {
+        checkSameLength(a.length, b.length);
+        return roundEqualsMismatch(a, 0, b, 0, a.length, factor);
+    }
+
+    /**
+     * Compares the ranges element by element the same way as {@link #roundEquals(float, float, float)} does, the
+     * semantics of {@code NaN} and infinite values are the same. The ranges are checked in blocks: a block is scanned
+     * by a simple loop checking {@code a == b} without branches, and only blocks containing possible mismatches are
+     * checked element by element.
+     *
+     * @param a       the first array
+     * @param aOffset the start index of the range in the first array
+     * @param b       the second array
+     * @param bOffset the start index of the range in the second array
+     * @param length  the length of the ranges
+     * @param factor  the rounding factor
+     * @return the index of the first mismatch relative to the start of the ranges or {@code -1} if all elements
+     * are equal
+     * @throws IndexOutOfBoundsException if a range is out of the array bounds
+     */
+    @Contract(pure = true)
+    public static int roundEqualsMismatch(
+            @Nonnull float[] a, int aOffset, @Nonnull float[] b, int bOffset, int length, float factor) {
+        checkRange(a.length, aOffset, length);
+        checkRange(b.length, bOffset, length);
+
+        for (int blockStart = 0; blockStart < length; blockStart += MISMATCH_BLOCK_SIZE) {
+            int blockLength = min(MISMATCH_BLOCK_SIZE, length - blockStart);
+            int quickMismatchCount = countQuickRoundEqualsMismatches(
+                    a, aOffset + blockStart, b, bOffset + blockStart, blockLength
+            );
+            if (quickMismatchCount == 0) {
+                continue;
+            }
+
+            for (int i = blockStart, blockEnd = blockStart + blockLength; i < blockEnd; ++i) {
+                if (!roundEquals(a[aOffset + i], b[bOffset + i], factor)) {
+                    return i;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Compares the arrays element by element the same way as {@link #roundEquals(float, float, float)} does.
+     *
+     * @param a       the first array
+     * @param b       the second array of the same length
+     * @param factor  the rounding factor
+     * @return the number of mismatches
+     * @throws IllegalArgumentException if the arrays have different lengths
+     * @see #roundEqualsMismatch(float[], int, float[], int, int, float)
+     */
+    @Contract(pure = true)
+    public static int countRoundEqualsMismatches(@Nonnull float[] a, @Nonnull float[] b, float factor) {
+        checkSameLength(a.length, b.length);
+        return countRoundEqualsMismatches(a, 0, b, 0, a.length, factor);
+    }
+
+    /**
+     * Compares the ranges element by element the same way as {@link #roundEquals(float, float, float)} does.
+     *
+     * @param a       the first array
+     * @param aOffset the start index of the range in the first array
+     * @param b       the second array
+     * @param bOffset the start index of the range in the second array
+     * @param length  the length of the ranges
+     * @param factor  the rounding factor
+     * @return the number of mismatches
+     * @throws IndexOutOfBoundsException if a range is out of the array bounds
+     * @see #roundEqualsMismatch(float[], int, float[], int, int, float)
+     */
+    @Contract(pure = true)
+    public static int countRoundEqualsMismatches(
+            @Nonnull float[] a, int aOffset, @Nonnull float[] b, int bOffset, int length, float factor) {
+        checkRange(a.length, aOffset, length);
+        checkRange(b.length, bOffset, length);
+
+        int count = 0;
+
+        for (int blockStart = 0; blockStart < length; blockStart += MISMATCH_BLOCK_SIZE) {
+            int blockLength = min(MISMATCH_BLOCK_SIZE, length - blockStart);
+            int quickMismatchCount = countQuickRoundEqualsMismatches(
+                    a, aOffset + blockStart, b, bOffset + blockStart, blockLength
+            );
+            if (quickMismatchCount == 0) {
+                continue;
+            }
+
+            for (int i = blockStart, blockEnd = blockStart + blockLength; i < blockEnd; ++i) {
+                if (!roundEquals(a[aOffset + i], b[bOffset + i], factor)) {
+                    ++count;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Compares the arrays element by element the same way as {@link #roundEquals(double, double, double)} does.
+     *
+     * @param a       the first array
+     * @param b       the second array of the same length
+     * @param factor  the rounding factor
+     * @return the index of the first mismatch or {@code -1} if all elements are equal
+     * @throws IllegalArgumentException if the arrays have different lengths
+     * @see #roundEqualsMismatch(double[], int, double[], int, int, double)
+     */
+    @Contract(pure = true)
+    public static int roundEqualsMismatch(@Nonnull double[] a, @Nonnull double[] b, double factor) {
+        checkSameLength(a.length, b.length);
+        return roundEqualsMismatch(a, 0, b, 0, a.length, factor);
+    }
+
+    /**
+     * Compares the ranges element by element the same way as {@link #roundEquals(double, double, double)} does, the
+     * semantics of {@code NaN} and infinite values are the same. The ranges are checked in blocks: a block is scanned
+     * by a simple loop checking {@code a == b} without branches, and only blocks containing possible mismatches are
+     * checked element by element.
+     *
+     * @param a       the first array
+     * @param aOffset the start index of the range in the first array
+     * @param b       the second array
+     * @param bOffset the start index of the range in the second array
+     * @param length  the length of the ranges
+     * @param factor  the rounding factor
+     * @return the index of the first mismatch relative to the start of the ranges or {@code -1} if all elements
+     * are equal
+     * @throws IndexOutOfBoundsException if a range is out of the array bounds
+     */
+    @Contract(pure = true)
+    public static int roundEqualsMismatch(
+            @Nonnull double[] a, int aOffset, @Nonnull double[] b, int bOffset, int length, double factor) {
+        checkRange(a.length, aOffset, length);
+        checkRange(b.length, bOffset, length);
+
+        for (int blockStart = 0; blockStart < length; blockStart += MISMATCH_BLOCK_SIZE) {
+            int blockLength = min(MISMATCH_BLOCK_SIZE, length - blockStart);
+            int quickMismatchCount = countQuickRoundEqualsMismatches(
+                    a, aOffset + blockStart, b, bOffset + blockStart, blockLength
+            );
+            if (quickMismatchCount == 0) {
+                continue;
+            }
+
+            for (int i = blockStart, blockEnd = blockStart + blockLength; i < blockEnd; ++i) {
+                if (!roundEquals(a[aOffset + i], b[bOffset + i], factor)) {
+                    return i;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Compares the arrays element by element the same way as {@link #roundEquals(double, double, double)} does.
+     *
+     * @param a       the first array
+     * @param b       the second array of the same length
+     * @param factor  the rounding factor
+     * @return the number of mismatches
+     * @throws IllegalArgumentException if the arrays have different lengths
+     * @see #roundEqualsMismatch(double[], int, double[], int, int, double)
+     */
+    @Contract(pure = true)
+    public static int countRoundEqualsMismatches(@Nonnull double[] a, @Nonnull double[] b, double factor) {
+        checkSameLength(a.length, b.length);
+        return countRoundEqualsMismatches(a, 0, b, 0, a.length, factor);
+    }
+
+    /**
+     * Compares the ranges element by element the same way as {@link #roundEquals(double, double, double)} does.
+     *
+     * @param a       the first array
+     * @param aOffset the start index of the range in the first array
+     * @param b       the second array
+     * @param bOffset the start index of the range in the second array
+     * @param length  the length of the ranges
+     * @param factor  the rounding factor
+     * @return the number of mismatches
+     * @throws IndexOutOfBoundsException if a range is out of the array bounds
+     * @see #roundEqualsMismatch(double[], int, double[], int, int, double)
+     */
+    @Contract(pure = true)
+    public static int countRoundEqualsMismatches(
+            @Nonnull double[] a, int aOffset, @Nonnull double[] b, int bOffset, int length, double factor) {
+        checkRange(a.length, aOffset, length);
+        checkRange(b.length, bOffset, length);
+
+        int count = 0;
+
+        for (int blockStart = 0; blockStart < length; blockStart += MISMATCH_BLOCK_SIZE) {
+            int blockLength = min(MISMATCH_BLOCK_SIZE, length - blockStart);
+            int quickMismatchCount = countQuickRoundEqualsMismatches(
+                    a, aOffset + blockStart, b, bOffset + blockStart, blockLength
+            );
+            if (quickMismatchCount == 0) {
+                continue;
+            }
+
+            for (int i = blockStart, blockEnd = blockStart + blockLength; i < blockEnd; ++i) {
+                if (!roundEquals(a[aOffset + i], b[bOffset + i], factor)) {
+                    ++count;
+                }
+            }
+        }
+
+        return count;
+    }
+
     @Contract(pure = true)
     public static byte nullToZero(@Nullable Byte value) {
         return value == null ? (byte) 0 : value;
@@ -768,6 +1601,357 @@ public final class NumberUtil {
         return value == null || value == 0.0D ? null : value;
     }
 
+    @SuppressWarnings("OverlyComplexMethod")
+    private static long parseInteger(
+            @Nonnull CharSequence value, int start, int end, long minValue, long maxValue, long defaultValue) {
+        start = skipLeadingWhitespace(value, start, end);
+        end = skipTrailingWhitespace(value, start, end);
+
+        if (start == end) {
+            return defaultValue;
+        }
+
+        int i = start;
+        char c = value.charAt(i);
+        boolean negative = c == '-';
+
+        if (negative || c == '+') {
+            ++i;
+        }
+
+        // The value is accumulated negatively as by Long.parseLong, since the negative range is larger.
+        long limit = negative ? minValue : -maxValue;
+        long multiplicationLimit = limit / 10L;
+        long result = 0L;
+        boolean overflow = false;
+        int digitStart = i;
+
+        for (; i < end && (c = value.charAt(i)) >= '0' && c <= '9'; ++i) {
+            int digit = c - '0';
+            if (result < multiplicationLimit || result * 10L < limit + digit) {
+                overflow = true;
+            } else {
+                result = result * 10L - digit;
+            }
+        }
+
+        if (i < end) {
+            switch (value.charAt(i)) {
+                case '.':
+                case 'e':
+                case 'E':
+                case 'x':
+                case 'X':
+                case 'd':
+                case 'D':
+                case 'f':
+                case 'F':
+                    return parseIntegerAsDouble(value, start, end, minValue, maxValue, defaultValue);
+                default:
+                    return defaultValue;
+            }
+        }
+
+        if (i == digitStart || overflow) {
+            return defaultValue;
+        }
+
+        return negative ? result : -result;
+    }
+
+    private static long parseIntegerAsDouble(
+            @Nonnull CharSequence value, int start, int end, long minValue, long maxValue, long defaultValue) {
+        double doubleValue;
+        try {
+            doubleValue = DoubleParser.parse(value, start, end);
+        } catch (NumberFormatException ignored) {
+            return defaultValue;
+        }
+
+        double truncatedValue = doubleValue < 0.0D ? ceil(doubleValue) : floor(doubleValue);
+        return truncatedValue >= (double) minValue && truncatedValue <= (double) maxValue
+                ? (long) truncatedValue
+                : defaultValue;
+    }
+
+    /**
+     * Skips leading whitespace the same way as {@code Double.parseDouble(StringUtil.trim(value))} does: chars
+     * trimmed by {@link StringUtil#trim(String)} go first, then chars up to {@code ' '} trimmed by
+     * {@link String#trim()}.
+     *
+     * @return the index of the first char after the whitespace
+     */
+    private static int skipLeadingWhitespace(@Nonnull CharSequence value, int start, int end) {
+        while (start < end && StringUtil.isWhitespace(value.charAt(start))) {
+            ++start;
+        }
+
+        while (start < end && value.charAt(start) <= ' ') {
+            ++start;
+        }
+
+        return start;
+    }
+
+    /**
+     * Skips trailing whitespace the same way as {@link #skipLeadingWhitespace(CharSequence, int, int)} does.
+     *
+     * @return the index of the first char of the trailing whitespace
+     */
+    private static int skipTrailingWhitespace(@Nonnull CharSequence value, int start, int end) {
+        while (end > start && StringUtil.isWhitespace(value.charAt(end - 1))) {
+            --end;
+        }
+
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            --end;
+        }
+
+        return end;
+    }
+
+    /**
+     * Counts elements which don't pass the quick check. Elements passing it are certainly nearly equal if the
+     * epsilon is finite. The loop has no branches and calls to be vectorized by the JIT compiler.
+     */
+    private static int countQuickNearlyEqualsMismatches(
+            @Nonnull float[] a, int aOffset, @Nonnull float[] b, int bOffset, int length, float epsilon) {
+        int count = 0;
+
+        for (int i = 0; i < length; ++i) {
+            count += abs(a[aOffset + i] - b[bOffset + i]) <= epsilon ? 0 : 1;
+        }
+
+        return count;
+    }
+
+    /**
+     * Counts elements which don't pass the quick check. Elements passing it are certainly nearly equal if the
+     * epsilon is finite. The loop has no branches and calls to be vectorized by the JIT compiler.
+     */
+    private static int countQuickNearlyEqualsMismatches(
+            @Nonnull double[] a, int aOffset, @Nonnull double[] b, int bOffset, int length, double epsilon) {
+        int count = 0;
+
+        for (int i = 0; i < length; ++i) {
+            count += abs(a[aOffset + i] - b[bOffset + i]) <= epsilon ? 0 : 1;
+        }
+
+        return count;
+    }
+
+    /**
+     * Counts elements which are not equal by {@code ==}. Equal elements are certainly round equal.
+     */
+    private static int countQuickRoundEqualsMismatches(
+            @Nonnull float[] a, int aOffset, @Nonnull float[] b, int bOffset, int length) {
+        int count = 0;
+
+        for (int i = 0; i < length; ++i) {
+            count += a[aOffset + i] == b[bOffset + i] ? 0 : 1;
+        }
+
+        return count;
+    }
+
+    /**
+     * Counts elements which are not equal by {@code ==}. Equal elements are certainly round equal.
+     */
+    private static int countQuickRoundEqualsMismatches(
+            @Nonnull double[] a, int aOffset, @Nonnull double[] b, int bOffset, int length) {
+        int count = 0;
+
+        for (int i = 0; i < length; ++i) {
+            count += a[aOffset + i] == b[bOffset + i] ? 0 : 1;
+        }
+
+        return count;
+    }
+
+    private static void checkSameLength(int lengthA, int lengthB) {
+        if (lengthA != lengthB) {
+            throw new IllegalArgumentException(String.format(
+                    "Arrays have different lengths: %d and %d.", lengthA, lengthB
+            ));
+        }
+    }
+
+    private static void checkRange(int arrayLength, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > arrayLength - length) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Range [%d, %d) is out of bounds [0, %d).", offset, offset + length, arrayLength
+            ));
+        }
+    }
+
+    /**
+     * @return the class of the first non-null value in the range or {@code null} if there is none
+     */
+    @Nullable
+    private static Class<?> getElementType(@Nonnull Object[] values, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            Object value = values[i];
+            if (value != null) {
+                return value.getClass();
+            }
+        }
+
+        return null;
+    }
+
+    private static void convertInParallel(int count, @Nonnull RangeConverter converter) {
+        if (count < PARALLEL_CONVERSION_THRESHOLD) {
+            converter.convert(0, count);
+            return;
+        }
+
+        int blockCount = (count + PARALLEL_CONVERSION_BLOCK_SIZE - 1) / PARALLEL_CONVERSION_BLOCK_SIZE;
+        IntStream.range(0, blockCount).parallel().forEach(blockIndex -> {
+            int from = blockIndex * PARALLEL_CONVERSION_BLOCK_SIZE;
+            converter.convert(from, min(from + PARALLEL_CONVERSION_BLOCK_SIZE, count));
+        });
+    }
+
+    private static void convertToInts(
+            @Nonnull Object[] values, int from, int to, @Nonnull int[] result, boolean nullReplaced, int nullValue) {
+        Class<?> elementType = getElementType(values, from, to);
+
+        if (elementType == Integer.class) {
+            for (int i = from; i < to; ++i) {
+                Object value = values[i];
+                result[i] = value instanceof Integer
+                        ? (Integer) value
+                        : toIntElement(value, i, nullReplaced, nullValue);
+            }
+        } else if (elementType == Long.class) {
+            for (int i = from; i < to; ++i) {
+                Object value = values[i];
+                result[i] = value instanceof Long
+                        ? toInt((long) (Long) value)
+                        : toIntElement(value, i, nullReplaced, nullValue);
+            }
+        } else if (elementType == Double.class) {
+            for (int i = from; i < to; ++i) {
+                Object value = values[i];
+                result[i] = value instanceof Double
+                        ? toInt((double) (Double) value)
+                        : toIntElement(value, i, nullReplaced, nullValue);
+            }
+        } else {
+            for (int i = from; i < to; ++i) {
+                result[i] = toIntElement(values[i], i, nullReplaced, nullValue);
+            }
+        }
+    }
+
+    private static int toIntElement(@Nullable Object value, int index, boolean nullReplaced, int nullValue) {
+        if (value != null) {
+            return toInt(value);
+        }
+
+        if (nullReplaced) {
+            return nullValue;
+        }
+
+        throw new IllegalArgumentException("Value #" + index + " is null.");
+    }
+
+    private static void convertToLongs(
+            @Nonnull Object[] values, int from, int to, @Nonnull long[] result, boolean nullReplaced, long nullValue) {
+        Class<?> elementType = getElementType(values, from, to);
+
+        if (elementType == Long.class) {
+            for (int i = from; i < to; ++i) {
+                Object value = values[i];
+                result[i] = value instanceof Long
+                        ? (Long) value
+                        : toLongElement(value, i, nullReplaced, nullValue);
+            }
+        } else if (elementType == Integer.class) {
+            for (int i = from; i < to; ++i) {
+                Object value = values[i];
+                result[i] = value instanceof Integer
+                        ? (long) (int) (Integer) value
+                        : toLongElement(value, i, nullReplaced, nullValue);
+            }
+        } else if (elementType == Double.class) {
+            for (int i = from; i < to; ++i) {
+                Object value = values[i];
+                result[i] = value instanceof Double
+                        ? toLong((double) (Double) value)
+                        : toLongElement(value, i, nullReplaced, nullValue);
+            }
+        } else {
+            for (int i = from; i < to; ++i) {
+                result[i] = toLongElement(values[i], i, nullReplaced, nullValue);
+            }
+        }
+    }
+
+    private static long toLongElement(@Nullable Object value, int index, boolean nullReplaced, long nullValue) {
+        if (value != null) {
+            return toLong(value);
+        }
+
+        if (nullReplaced) {
+            return nullValue;
+        }
+
+        throw new IllegalArgumentException("Value #" + index + " is null.");
+    }
+
+    private static void convertToDoubles(
+            @Nonnull Object[] values, int from, int to, @Nonnull double[] result,
+            boolean nullReplaced, double nullValue) {
+        Class<?> elementType = getElementType(values, from, to);
+
+        if (elementType == Double.class) {
+            for (int i = from; i < to; ++i) {
+                Object value = values[i];
+                result[i] = value instanceof Double
+                        ? (Double) value
+                        : toDoubleElement(value, i, nullReplaced, nullValue);
+            }
+        } else if (elementType == Float.class) {
+            for (int i = from; i < to; ++i) {
+                Object value = values[i];
+                result[i] = value instanceof Float
+                        ? (double) (float) (Float) value
+                        : toDoubleElement(value, i, nullReplaced, nullValue);
+            }
+        } else if (elementType == Integer.class) {
+            for (int i = from; i < to; ++i) {
+                Object value = values[i];
+                result[i] = value instanceof Integer
+                        ? (double) (int) (Integer) value
+                        : toDoubleElement(value, i, nullReplaced, nullValue);
+            }
+        } else if (elementType == Long.class) {
+            for (int i = from; i < to; ++i) {
+                Object value = values[i];
+                result[i] = value instanceof Long
+                        ? (double) (long) (Long) value
+                        : toDoubleElement(value, i, nullReplaced, nullValue);
+            }
+        } else {
+            for (int i = from; i < to; ++i) {
+                result[i] = toDoubleElement(values[i], i, nullReplaced, nullValue);
+            }
+        }
+    }
+
+    private static double toDoubleElement(@Nullable Object value, int index, boolean nullReplaced, double nullValue) {
+        if (value != null) {
+            return toDouble(value);
+        }
+
+        if (nullReplaced) {
+            return nullValue;
+        }
+
+        throw new IllegalArgumentException("Value #" + index + " is null.");
+    }
+
     public static long packInts(int left, int right) {
         return ((long) left << Integer.SIZE) | (right & 0xffffffffL);
     }
@@ -822,4 +2006,47 @@ public final class NumberUtil {
     public static float unpackRightFloat(long value) {
         return Float.intBitsToFloat(unpackRightInt(value));
     }
+
+    @FunctionalInterface
+    private interface RangeConverter {
+        void convert(int from, int to);
+    }
+
+    /**
+     * Read-only char sequence view of the ASCII bytes.
+     */
+    private static final class AsciiCharSequence implements CharSequence {
+        private final byte[] bytes;
+
+        private AsciiCharSequence(@Nonnull byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[index] & 0xFF);
+        }
+
+        @Nonnull
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString(start, end);
+        }
+
+        @Nonnull
+        @Override
+        public String toString() {
+            return toString(0, bytes.length);
+        }
+
+        @Nonnull
+        private String toString(int start, int end) {
+            return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+    }
 }
@@ -0,0 +1,220 @@
+package ru.sladethe.common.text;
+
+import org.jetbrains.annotations.Contract;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matches a single char of the given set or a run of such chars without the regex engine. Results of
+ * the operations are the same as of the equivalent {@link Pattern} operations: {@code "[chars]"} or,
+ * for a run pattern, {@code "[chars]+"}.
+ *
+ * @author Maxim Shipko (sladethe@gmail.com)
+ * @see CharPatterns
+ */
+@SuppressWarnings("WeakerAccess")
+public final class CharPattern {
+    private final char[] chars;
+    private final char singleChar;
+    private final boolean single;
+    private final boolean run;
+
+    private CharPattern(@Nonnull char[] chars, boolean run) {
+        this.chars = chars;
+        this.singleChar = chars[0];
+        this.single = chars.length == 1;
+        this.run = run;
+    }
+
+    /**
+     * @param c the char to match
+     * @return the pattern matching the char, equivalent to {@code Pattern.compile(Pattern.quote("" + c))}
+     */
+    @Nonnull
+    public static CharPattern of(char c) {
+        return new CharPattern(new char[] {c}, false);
+    }
+
+    /**
+     * @param chars the chars to match
+     * @return the pattern matching any of the chars, equivalent to the regex {@code [chars]}
+     */
+    @Nonnull
+    public static CharPattern anyOf(@Nonnull String chars) {
+        if (chars.isEmpty()) {
+            throw new IllegalArgumentException("Argument 'chars' is empty.");
+        }
+
+        char[] sortedChars = chars.toCharArray();
+        Arrays.sort(sortedChars);
+        return new CharPattern(sortedChars, false);
+    }
+
+    /**
+     * @return the pattern matching a run of one or more chars of this pattern, equivalent to the regex
+     * {@code [chars]+}
+     */
+    @Nonnull
+    public CharPattern oneOrMore() {
+        return run ? this : new CharPattern(chars, true);
+    }
+
+    @Contract(pure = true)
+    public boolean matches(char c) {
+        if (single) {
+            return c == singleChar;
+        }
+
+        for (char patternChar : chars) {
+            if (c == patternChar) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param s    the char sequence to search in
+     * @param from the index to start the search from
+     * @return the start index of the first match or {@code -1} if there is none
+     */
+    @Contract(pure = true)
+    public int indexOf(@Nonnull CharSequence s, int from) {
+        for (int i = Math.max(from, 0), length = s.length(); i < length; ++i) {
+            if (matches(s.charAt(i))) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param s the char sequence to search in
+     * @return the start index of the first match or {@code -1} if there is none
+     */
+    @Contract(pure = true)
+    public int indexOf(@Nonnull CharSequence s) {
+        return indexOf(s, 0);
+    }
+
+    /**
+     * @param s the char sequence to search in
+     * @return the number of matches
+     */
+    @Contract(pure = true)
+    public int count(@Nonnull CharSequence s) {
+        int count = 0;
+
+        for (int start = indexOf(s, 0); start != -1; start = indexOf(s, getMatchEnd(s, start))) {
+            ++count;
+        }
+
+        return count;
+    }
+
+    /**
+     * Works the same way as {@link Pattern#split(CharSequence)}.
+     *
+     * @param s the char sequence to be split
+     * @return the array of parts, trailing empty parts are removed
+     */
+    @Nonnull
+    public String[] split(@Nonnull CharSequence s) {
+        return split(s, 0);
+    }
+
+    /**
+     * Works the same way as {@link Pattern#split(CharSequence, int)}.
+     *
+     * @param s     the char sequence to be split
+     * @param limit the result threshold
+     * @return the array of parts
+     */
+    @Nonnull
+    public String[] split(@Nonnull CharSequence s, int limit) {
+        int length = s.length();
+        int index = 0;
+        boolean matchLimited = limit > 0;
+        List<String> parts = new ArrayList<>();
+
+        for (int start = indexOf(s, 0); start != -1; ) {
+            int end = getMatchEnd(s, start);
+
+            if (!matchLimited || parts.size() < limit - 1) {
+                parts.add(s.subSequence(index, start).toString());
+                index = end;
+            } else if (parts.size() == limit - 1) {
+                parts.add(s.subSequence(index, length).toString());
+                index = end;
+                break;
+            }
+
+            start = indexOf(s, end);
+        }
+
+        if (index == 0) {
+            return new String[] {s.toString()};
+        }
+
+        if (!matchLimited || parts.size() < limit) {
+            parts.add(s.subSequence(index, length).toString());
+        }
+
+        int resultSize = parts.size();
+        if (limit == 0) {
+            while (resultSize > 0 && parts.get(resultSize - 1).isEmpty()) {
+                --resultSize;
+            }
+        }
+
+        return parts.subList(0, resultSize).toArray(new String[resultSize]);
+    }
+
+    /**
+     * Replaces each match with the literal replacement. Works the same way as
+     * {@code pattern.matcher(s).replaceAll(Matcher.quoteReplacement(replacement))}.
+     *
+     * @param s           the char sequence to replace matches in
+     * @param replacement the literal replacement
+     * @return the string with all matches replaced
+     * @see Matcher#quoteReplacement(String)
+     */
+    @Nonnull
+    public String replaceAll(@Nonnull CharSequence s, @Nonnull String replacement) {
+        int start = indexOf(s, 0);
+        if (start == -1) {
+            return s.toString();
+        }
+
+        int length = s.length();
+        StringBuilder result = new StringBuilder(length + 16);
+        int index = 0;
+
+        do {
+            result.append(s, index, start).append(replacement);
+            index = getMatchEnd(s, start);
+            start = indexOf(s, index);
+        } while (start != -1);
+
+        return result.append(s, index, length).toString();
+    }
+
+    private int getMatchEnd(@Nonnull CharSequence s, int start) {
+        int end = start + 1;
+
+        if (run) {
+            for (int length = s.length(); end < length && matches(s.charAt(end)); ) {
+                ++end;
+            }
+        }
+
+        return end;
+    }
+}
@@ -0,0 +1,34 @@
+package ru.sladethe.common.text;
+
+/**
+ * Regex-free counterparts of the single char {@link Patterns}. Multi-char patterns such as
+ * {@link Patterns#LINE_BREAK_PATTERN} and {@link Patterns#CR_LF_PATTERN} have no counterparts.
+ *
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("unused")
+public final class CharPatterns {
+    public static final CharPattern PLUS_PATTERN = CharPattern.of('+');
+    public static final CharPattern MINUS_PATTERN = CharPattern.of('-');
+    public static final CharPattern EQ_PATTERN = CharPattern.of('=');
+    public static final CharPattern LT_PATTERN = CharPattern.of('<');
+    public static final CharPattern GT_PATTERN = CharPattern.of('>');
+    public static final CharPattern SPACE_PATTERN = CharPattern.of(' ');
+    public static final CharPattern NBSP_PATTERN = CharPattern.of(StringUtil.NON_BREAKING_SPACE);
+    public static final CharPattern WHITESPACE_PATTERN = CharPattern.anyOf(" \t\n\u000B\f\r").oneOrMore();
+    public static final CharPattern THIN_SPACE_PATTERN = CharPattern.of(StringUtil.THIN_SPACE);
+    public static final CharPattern ZERO_WIDTH_SPACE_PATTERN = CharPattern.of(StringUtil.ZERO_WIDTH_SPACE);
+    public static final CharPattern TAB_PATTERN = CharPattern.of('\t');
+    public static final CharPattern CR_PATTERN = CharPattern.of('\r');
+    public static final CharPattern LF_PATTERN = CharPattern.of('\n');
+    public static final CharPattern SLASH_PATTERN = CharPattern.of('/');
+    public static final CharPattern DOT_PATTERN = CharPattern.of('.');
+    public static final CharPattern COMMA_PATTERN = CharPattern.of(',');
+    public static final CharPattern SEMICOLON_PATTERN = CharPattern.of(';');
+    public static final CharPattern COLON_PATTERN = CharPattern.of(':');
+    public static final CharPattern AMP_PATTERN = CharPattern.of('&');
+
+    private CharPatterns() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -3,8 +3,8 @@ package ru.sladethe.common.text;
 import ru.sladethe.common.math.NumberUtil;
 
 import javax.annotation.*;
+import java.io.IOException;
 import java.util.Locale;
-import java.util.regex.Pattern;
 
 import static ru.sladethe.common.io.FileUtil.*;
 
@@ -12,94 +12,257 @@ import static ru.sladethe.common.io.FileUtil.*;
  * @author Maxim Shipko (sladethe@gmail.com)
  */
 public final class FormatUtil {
-    private static final Pattern DATA_SIZE_PATTERN = Pattern.compile(
-            "(0|[1-9][01-9]{0,5})(\\.[01-9]{1,5})? ?[KMGTP]?B?"
-    );
+    /**
+     * Grammar of the data size accepted by {@link #parseDataSize(String)}, the input is matched case-insensitively.
+     */
+    private static final String DATA_SIZE_PATTERN = "(0|[1-9][01-9]{0,5})(\\.[01-9]{1,5})? ?[KMGTP]?B?";
+
+    private static final int MAX_DATA_SIZE_INTEGER_DIGIT_COUNT = 6;
+    private static final int MAX_DATA_SIZE_FRACTION_DIGIT_COUNT = 5;
+    private static final double[] DECIMAL_POWERS = {1.0D, 1.0E1D, 1.0E2D, 1.0E3D, 1.0E4D, 1.0E5D};
+
+    /**
+     * Exclusive upper bound of sizes formatted without {@link String#format(Locale, String, Object...)}.
+     */
+    private static final long MAX_EXACTLY_FORMATTED_SIZE = 1L << 48;
 
     private FormatUtil() {
         throw new UnsupportedOperationException();
     }
 
-    @SuppressWarnings("ConstantConditions")
     @Nonnull
     public static String formatDataSize(@Nonnegative long size) {
+        StringBuilder result = new StringBuilder(16);
+        formatDataSize(size, result);
+        return result.toString();
+    }
+
+    /**
+     * Appends the data size formatted the same way as {@link #formatDataSize(long)} does.
+     *
+     * @param size the data size in bytes
+     * @param out  the string builder to write the result to
+     */
+    public static void formatDataSize(@Nonnegative long size, @Nonnull StringBuilder out) {
+        try {
+            formatDataSize(size, (Appendable) out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected I/O error while writing to string builder.", e);
+        }
+    }
+
+    /**
+     * Appends the data size formatted the same way as {@link #formatDataSize(long)} does. Neither the intermediate
+     * strings nor the boxed values are created unless the size is at least {@code 2^48} bytes.
+     *
+     * @param size the data size in bytes
+     * @param out  the appendable to write the result to
+     * @throws IOException if the appendable throws it
+     */
+    @SuppressWarnings("ConstantConditions")
+    public static void formatDataSize(@Nonnegative long size, @Nonnull Appendable out) throws IOException {
         if (size < 0L) {
             throw new IllegalArgumentException("Argument 'size' must be a positive integer or zero.");
         }
 
         if (size >= BYTES_PER_PB) {
-            return formatDataSize(size, BYTES_PER_PB, "PB");
+            formatDataSize(size, BYTES_PER_PB, "PB", out);
+        } else if (size >= BYTES_PER_TB) {
+            formatDataSize(size, BYTES_PER_TB, "TB", out);
+        } else if (size >= BYTES_PER_GB) {
+            formatDataSize(size, BYTES_PER_GB, "GB", out);
+        } else if (size >= BYTES_PER_MB) {
+            formatDataSize(size, BYTES_PER_MB, "MB", out);
+        } else if (size >= BYTES_PER_KB) {
+            formatDataSize(size, BYTES_PER_KB, "kB", out);
+        } else {
+            appendNonNegativeLong(size, out);
+            out.append(" B");
         }
+    }
 
-        if (size >= BYTES_PER_TB) {
-            return formatDataSize(size, BYTES_PER_TB, "TB");
-        }
+    /**
+     * Rounds the fraction half up to one decimal the same way as {@code String.format(Locale.US, "%.1f", ...)}
+     * does. The unit is a power of two, so the double quotient is exact. While the size is below
+     * {@link #MAX_EXACTLY_FORMATTED_SIZE}, the quotient is too far from any non-dyadic tie to be printed as one,
+     * so rounding of the exact value gives the same digits. Larger sizes are formatted with
+     * {@link String#format(Locale, String, Object...)}.
+     */
+    private static void formatDataSize(
+            @Nonnegative long size, @Nonnegative long unit, @Nonnull String unitName, @Nonnull Appendable out)
+            throws IOException {
+        long integerPart = size / unit;
+        long remainder = size % unit;
 
-        if (size >= BYTES_PER_GB) {
-            return formatDataSize(size, BYTES_PER_GB, "GB");
+        if (remainder == 0L) {
+            appendNonNegativeLong(integerPart, out);
+            out.append(' ').append(unitName);
+            return;
         }
 
-        if (size >= BYTES_PER_MB) {
-            return formatDataSize(size, BYTES_PER_MB, "MB");
+        if (size >= MAX_EXACTLY_FORMATTED_SIZE) {
+            out.append(String.format(Locale.US, "%.1f %s", (double) size / (double) unit, unitName));
+            return;
         }
 
-        if (size >= BYTES_PER_KB) {
-            return formatDataSize(size, BYTES_PER_KB, "kB");
+        long scaledRemainder = remainder * 10L;
+        long tenths = scaledRemainder / unit;
+
+        if ((scaledRemainder % unit) << 1 >= unit && ++tenths == 10L) {
+            ++integerPart;
+            tenths = 0L;
         }
 
-        return size + " B";
+        appendNonNegativeLong(integerPart, out);
+        out.append('.').append((char) ('0' + tenths)).append(' ').append(unitName);
     }
 
-    @Nonnull
-    private static String formatDataSize(@Nonnegative long size, @Nonnegative long unit, @Nonnull String unitName) {
-        if (size % unit == 0) {
-            return size / unit + " " + unitName;
+    private static void appendNonNegativeLong(@Nonnegative long value, @Nonnull Appendable out) throws IOException {
+        long divisor = 1L;
+        while (divisor <= value / 10L) {
+            divisor *= 10L;
         }
 
-        return String.format(Locale.US, "%.1f %s", (double) size / (double) unit, unitName);
+        for (; divisor > 0L; divisor /= 10L) {
+            out.append((char) ('0' + value / divisor % 10L));
+        }
     }
 
+    /**
+     * Parses the data size like {@code "512"}, {@code "1.5 kB"} or {@code "10G"}. The unit letter and {@code 'B'}
+     * are case-insensitive, units are binary: {@code 1 kB = 1024 B}.
+     *
+     * @param size the data size to parse
+     * @return the data size in bytes, rounded towards zero, or {@code 0} if the argument is {@code null} or blank
+     * @throws IllegalArgumentException if the data size is malformed
+     */
     public static long parseDataSize(@Nullable String size) {
-        size = StringUtil.trimToNull(size);
-        if (size == null) {
+        return size == null ? 0L : parseDataSize(size, 0, size.length());
+    }
+
+    /**
+     * Parses the range of the char sequence in a single pass without creating intermediate strings. Whole-number
+     * sizes are calculated with the exact integer arithmetic, fractional sizes are rounded the same way
+     * as by {@link Double#parseDouble(String)}.
+     *
+     * @param size   the char sequence containing the data size
+     * @param offset the start index of the data size
+     * @param length the length of the data size
+     * @return the data size in bytes, rounded towards zero, or {@code 0} if the range is blank
+     * @throws IllegalArgumentException if the data size is malformed
+     * @see #parseDataSize(String)
+     */
+    @SuppressWarnings("OverlyComplexMethod")
+    public static long parseDataSize(@Nonnull CharSequence size, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+
+        while (start < end && StringUtil.isWhitespace(size.charAt(start))) {
+            ++start;
+        }
+
+        while (end > start && StringUtil.isWhitespace(size.charAt(end - 1))) {
+            --end;
+        }
+
+        if (start == end) {
             return 0L;
         }
 
-        size = size.toUpperCase();
+        int i = start;
+        long integerPart = 0L;
+
+        while (i < end && isDigit(size.charAt(i))) {
+            integerPart = integerPart * 10L + size.charAt(i++) - '0';
+        }
+
+        int integerDigitCount = i - start;
+        if (integerDigitCount == 0 || integerDigitCount > MAX_DATA_SIZE_INTEGER_DIGIT_COUNT
+                || integerDigitCount > 1 && size.charAt(start) == '0') {
+            throw newDataSizeMismatchException(size, start, end);
+        }
+
+        long mantissa = integerPart;
+        int fractionDigitCount = 0;
+
+        if (i < end && size.charAt(i) == '.') {
+            int fractionStart = ++i;
+
+            while (i < end && isDigit(size.charAt(i))) {
+                mantissa = mantissa * 10L + size.charAt(i++) - '0';
+            }
 
-        if (!DATA_SIZE_PATTERN.matcher(size).matches()) {
-            throw new IllegalArgumentException(String.format(
-                    "'%s' does not match the pattern '%s'.", size, DATA_SIZE_PATTERN
-            ));
+            fractionDigitCount = i - fractionStart;
+            if (fractionDigitCount == 0 || fractionDigitCount > MAX_DATA_SIZE_FRACTION_DIGIT_COUNT) {
+                throw newDataSizeMismatchException(size, start, end);
+            }
         }
 
-        int lastCharIndex = size.length() - 1;
-        char lastChar = size.charAt(lastCharIndex);
+        if (i < end && size.charAt(i) == ' ') {
+            ++i;
+        }
 
-        if (lastChar == 'B') {
-            size = size.substring(0, lastCharIndex);
+        long unit = i < end ? getDataSizeUnit(size.charAt(i)) : 0L;
+        if (unit == 0L) {
+            unit = 1L;
+        } else {
+            ++i;
+        }
 
-            lastCharIndex = size.length() - 1;
-            lastChar = size.charAt(lastCharIndex);
+        if (i < end && (size.charAt(i) == 'B' || size.charAt(i) == 'b')) {
+            ++i;
         }
 
-        switch (lastChar) {
+        if (i != end) {
+            throw newDataSizeMismatchException(size, start, end);
+        }
+
+        if (fractionDigitCount == 0) {
+            return integerPart <= Long.MAX_VALUE / unit
+                    ? integerPart * unit
+                    : NumberUtil.toLong((double) integerPart * (double) unit);
+        }
+
+        // Both operands are exact, so the quotient is rounded the same way as the parsed decimal.
+        double value = (double) mantissa / DECIMAL_POWERS[fractionDigitCount];
+        return NumberUtil.toLong(value * (double) unit);
+    }
+
+    /**
+     * @return the number of bytes in the unit or {@code 0} if the char is not a unit letter
+     */
+    private static long getDataSizeUnit(char c) {
+        switch (c) {
             case 'K':
-                return parseDataSize(size, lastCharIndex, BYTES_PER_KB);
+            case 'k':
+                return BYTES_PER_KB;
             case 'M':
-                return parseDataSize(size, lastCharIndex, BYTES_PER_MB);
+            case 'm':
+                return BYTES_PER_MB;
             case 'G':
-                return parseDataSize(size, lastCharIndex, BYTES_PER_GB);
+            case 'g':
+                return BYTES_PER_GB;
             case 'T':
-                return parseDataSize(size, lastCharIndex, BYTES_PER_TB);
+            case 't':
+                return BYTES_PER_TB;
             case 'P':
-                return parseDataSize(size, lastCharIndex, BYTES_PER_PB);
+            case 'p':
+                return BYTES_PER_PB;
             default:
-                return NumberUtil.toLong(Double.parseDouble(size.trim()));
+                return 0L;
         }
     }
 
-    private static long parseDataSize(@Nonnull String size, @Nonnegative int lastCharIndex, @Nonnegative long unit) {
-        return NumberUtil.toLong(Double.parseDouble(size.substring(0, lastCharIndex).trim()) * unit);
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    @Nonnull
+    private static IllegalArgumentException newDataSizeMismatchException(
+            @Nonnull CharSequence size, int start, int end) {
+        return new IllegalArgumentException(String.format(
+                "'%s' does not match the pattern '%s'.",
+                size.subSequence(start, end).toString().toUpperCase(), DATA_SIZE_PATTERN
+        ));
     }
 }
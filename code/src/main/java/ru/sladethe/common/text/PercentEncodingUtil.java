@@ -0,0 +1,269 @@
+package ru.sladethe.common.text;
+
+import org.jetbrains.annotations.Contract;
+
+import javax.annotation.Nonnull;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes and decodes {@code application/x-www-form-urlencoded} strings using UTF-8. Results are the same as of
+ * {@link URLEncoder#encode(String, String)} and {@link URLDecoder#decode(String, String)} with the {@code "UTF-8"}
+ * encoding, illegal escape patterns are rejected the same way, but neither the charset lookup nor the intermediate
+ * buffers are needed. A string which contains nothing to encode or decode is returned as is.
+ *
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("WeakerAccess")
+public final class PercentEncodingUtil {
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Chars which are not encoded, indexed by the char code.
+     */
+    private static final boolean[] SAFE_CHARS = new boolean[128];
+
+    /**
+     * Values of the ASCII hexadecimal digits or {@code -1}, indexed by the char code.
+     */
+    private static final byte[] HEX_DIGIT_VALUES = new byte[128];
+
+    private PercentEncodingUtil() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param s the string to encode
+     * @return the encoded string, the same as {@code URLEncoder.encode(s, "UTF-8")}
+     */
+    @Contract(pure = true)
+    @Nonnull
+    public static String encode(@Nonnull String s) {
+        int length = s.length();
+        int i = 0;
+
+        while (i < length && isSafeChar(s.charAt(i))) {
+            ++i;
+        }
+
+        if (i == length) {
+            return s;
+        }
+
+        StringBuilder result = new StringBuilder(length + 16).append(s, 0, i);
+        encode(s, i, length, result);
+        return result.toString();
+    }
+
+    /**
+     * Appends the encoded char sequence.
+     *
+     * @param s   the char sequence to encode
+     * @param out the buffer to write the result to
+     */
+    public static void encode(@Nonnull CharSequence s, @Nonnull StringBuilder out) {
+        encode(s, 0, s.length(), out);
+    }
+
+    /**
+     * Appends the encoded range of the char sequence.
+     *
+     * @param s     the char sequence to encode
+     * @param start the start index of the range, inclusive
+     * @param end   the end index of the range, exclusive
+     * @param out   the buffer to write the result to
+     */
+    public static void encode(@Nonnull CharSequence s, int start, int end, @Nonnull StringBuilder out) {
+        for (int i = start; i < end; ++i) {
+            char c = s.charAt(i);
+
+            if (isSafeChar(c)) {
+                out.append(c);
+            } else if (c == ' ') {
+                out.append('+');
+            } else if (c < 0x80) {
+                appendEscapedByte(c, out);
+            } else if (c < 0x800) {
+                appendEscapedByte(0xC0 | c >> 6, out);
+                appendEscapedByte(0x80 | c & 0x3F, out);
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                    appendEscapedByte(0xF0 | codePoint >> 18, out);
+                    appendEscapedByte(0x80 | codePoint >> 12 & 0x3F, out);
+                    appendEscapedByte(0x80 | codePoint >> 6 & 0x3F, out);
+                    appendEscapedByte(0x80 | codePoint & 0x3F, out);
+                } else {
+                    // The malformed char is replaced by '?' as the UTF-8 encoder does.
+                    appendEscapedByte('?', out);
+                }
+            } else {
+                appendEscapedByte(0xE0 | c >> 12, out);
+                appendEscapedByte(0x80 | c >> 6 & 0x3F, out);
+                appendEscapedByte(0x80 | c & 0x3F, out);
+            }
+        }
+    }
+
+    /**
+     * @param s the string to decode
+     * @return the decoded string, the same as {@code URLDecoder.decode(s, "UTF-8")}
+     * @throws IllegalArgumentException if the string contains an illegal escape pattern
+     */
+    @Contract(pure = true)
+    @Nonnull
+    public static String decode(@Nonnull String s) {
+        int length = s.length();
+        int i = 0;
+
+        for (char c; i < length && (c = s.charAt(i)) != '%' && c != '+'; ) {
+            ++i;
+        }
+
+        if (i == length) {
+            return s;
+        }
+
+        StringBuilder result = new StringBuilder(length).append(s, 0, i);
+        decode(s, i, length, result);
+        return result.toString();
+    }
+
+    /**
+     * Appends the decoded char sequence.
+     *
+     * @param s   the char sequence to decode
+     * @param out the buffer to write the result to
+     * @throws IllegalArgumentException if the char sequence contains an illegal escape pattern
+     */
+    public static void decode(@Nonnull CharSequence s, @Nonnull StringBuilder out) {
+        decode(s, 0, s.length(), out);
+    }
+
+    /**
+     * Appends the decoded range of the char sequence.
+     *
+     * @param s     the char sequence to decode
+     * @param start the start index of the range, inclusive
+     * @param end   the end index of the range, exclusive
+     * @param out   the buffer to write the result to
+     * @throws IllegalArgumentException if the range contains an illegal escape pattern
+     */
+    @SuppressWarnings("OverlyComplexMethod")
+    public static void decode(@Nonnull CharSequence s, int start, int end, @Nonnull StringBuilder out) {
+        byte[] bytes = null;
+
+        for (int i = start; i < end; ) {
+            char c = s.charAt(i);
+
+            if (c == '+') {
+                out.append(' ');
+                ++i;
+                continue;
+            }
+
+            if (c != '%') {
+                out.append(c);
+                ++i;
+                continue;
+            }
+
+            if (bytes == null) {
+                bytes = new byte[(end - i) / 3];
+            }
+
+            int byteCount = 0;
+            boolean ascii = true;
+
+            while (i + 2 < end && c == '%') {
+                int value = getEscapedByte(s, i);
+                bytes[byteCount++] = (byte) value;
+                ascii &= value < 0x80;
+
+                i += 3;
+                if (i < end) {
+                    c = s.charAt(i);
+                }
+            }
+
+            if (i < end && c == '%') {
+                throw new IllegalArgumentException("URLDecoder: Incomplete trailing escape (%) pattern");
+            }
+
+            if (ascii) {
+                for (int byteIndex = 0; byteIndex < byteCount; ++byteIndex) {
+                    out.append((char) bytes[byteIndex]);
+                }
+            } else {
+                out.append(new String(bytes, 0, byteCount, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Contract(pure = true)
+    private static boolean isSafeChar(char c) {
+        return c < 128 && SAFE_CHARS[c];
+    }
+
+    private static void appendEscapedByte(int value, @Nonnull StringBuilder out) {
+        out.append('%').append(HEX_DIGITS[value >> 4 & 0xF]).append(HEX_DIGITS[value & 0xF]);
+    }
+
+    /**
+     * Parses two chars after {@code '%'} at the index. Non-ASCII digits and signs are handled the same way as
+     * {@link URLDecoder} does it with {@link Integer#parseInt(String, int)}.
+     */
+    private static int getEscapedByte(@Nonnull CharSequence s, int index) {
+        char high = s.charAt(index + 1);
+        char low = s.charAt(index + 2);
+
+        if (high < 128 && low < 128) {
+            int highValue = HEX_DIGIT_VALUES[high];
+            int lowValue = HEX_DIGIT_VALUES[low];
+            if (highValue >= 0 && lowValue >= 0) {
+                return highValue << 4 | lowValue;
+            }
+        }
+
+        int value;
+        try {
+            value = Integer.parseInt(s.subSequence(index + 1, index + 3).toString(), 16);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    "URLDecoder: Illegal hex characters in escape (%) pattern - " + e.getMessage()
+            );
+        }
+
+        if (value < 0) {
+            throw new IllegalArgumentException(
+                    "URLDecoder: Illegal hex characters in escape (%) pattern - negative value"
+            );
+        }
+
+        return value;
+    }
+
+    static {
+        for (char c = 'a'; c <= 'z'; ++c) {
+            SAFE_CHARS[c] = true;
+        }
+
+        for (char c = 'A'; c <= 'Z'; ++c) {
+            SAFE_CHARS[c] = true;
+        }
+
+        for (char c = '0'; c <= '9'; ++c) {
+            SAFE_CHARS[c] = true;
+        }
+
+        SAFE_CHARS['-'] = true;
+        SAFE_CHARS['_'] = true;
+        SAFE_CHARS['.'] = true;
+        SAFE_CHARS['*'] = true;
+
+        for (int c = 0; c < 128; ++c) {
+            HEX_DIGIT_VALUES[c] = (byte) Character.digit(c, 16);
+        }
+    }
+}
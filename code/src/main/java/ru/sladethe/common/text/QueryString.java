@@ -0,0 +1,429 @@
+package ru.sladethe.common.text;
+
+import org.jetbrains.annotations.Contract;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Raw URL query split into {@code '&'}-separated parameters. The query is scanned once: bounds of parameters
+ * and names are stored in index arrays, names and values are decoded only on access. Modified query is written
+ * back by joining the parameter regions without parsing it again.
+ * <p>
+ * Parameters are looked up by the raw (not decoded) name. The parameter {@code "name"} or {@code "name=value"}
+ * has the raw name {@code "name"}. Empty parameters are kept, but the result never starts with the separator:
+ * leading empty parameters are dropped when the query is written back, so {@code "&a&&b&"} becomes
+ * {@code "a&&b&"}, the same as the former {@code UrlUtil} query handling did. The instance is not thread-safe.
+ *
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("WeakerAccess")
+public final class QueryString {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final String query;
+    private boolean modified;
+
+    private int size;
+    private int[] offsets;
+    private int[] lengths;
+    private int[] nameLengths;
+
+    /**
+     * Sources of modified parameters, {@code null} for parameters of the original query.
+     */
+    @Nullable
+    private String[] sources;
+
+    @Nullable
+    private String[] names;
+    @Nullable
+    private String[] values;
+
+    /**
+     * @param query the raw query without the leading {@code '?'}
+     */
+    public QueryString(@Nonnull String query) {
+        this.query = query;
+
+        int length = query.length();
+        int capacity = INITIAL_CAPACITY;
+
+        for (int i = 0; i < length; ++i) {
+            if (query.charAt(i) == '&') {
+                ++capacity;
+            }
+        }
+
+        this.offsets = new int[capacity];
+        this.lengths = new int[capacity];
+        this.nameLengths = new int[capacity];
+
+        int start = 0;
+        int nameLength = -1;
+
+        for (int i = 0; i <= length; ++i) {
+            char c = i == length ? '&' : query.charAt(i);
+
+            if (c == '&') {
+                offsets[size] = start;
+                lengths[size] = i - start;
+                nameLengths[size++] = nameLength == -1 ? i - start : nameLength;
+                start = i + 1;
+                nameLength = -1;
+            } else if (c == '=' && nameLength == -1) {
+                nameLength = i - start;
+            }
+        }
+    }
+
+    /**
+     * @return the number of parameters including empty ones
+     */
+    @Contract(pure = true)
+    public int size() {
+        return size;
+    }
+
+    @Nonnull
+    public String getRawName(int index) {
+        checkIndex(index);
+        int offset = offsets[index];
+        return getSource(index).substring(offset, offset + nameLengths[index]);
+    }
+
+    /**
+     * @param index the index of the parameter
+     * @return the raw value or {@code null} if the parameter has no {@code '='}
+     */
+    @Nullable
+    public String getRawValue(int index) {
+        checkIndex(index);
+        int nameLength = nameLengths[index];
+        int length = lengths[index];
+
+        if (nameLength == length) {
+            return null;
+        }
+
+        int offset = offsets[index];
+        return getSource(index).substring(offset + nameLength + 1, offset + length);
+    }
+
+    /**
+     * @param index the index of the parameter
+     * @return the decoded name
+     * @throws IllegalArgumentException if the name is not correctly encoded
+     */
+    @Nonnull
+    public String getName(int index) {
+        checkIndex(index);
+
+        if (names == null) {
+            names = new String[offsets.length];
+        }
+
+        String name = names[index];
+        if (name == null) {
+            name = PercentEncodingUtil.decode(getRawName(index));
+            names[index] = name;
+        }
+
+        return name;
+    }
+
+    /**
+     * @param index the index of the parameter
+     * @return the decoded value or {@code null} if the parameter has no {@code '='}
+     * @throws IllegalArgumentException if the value is not correctly encoded
+     */
+    @Nullable
+    public String getValue(int index) {
+        checkIndex(index);
+
+        if (nameLengths[index] == lengths[index]) {
+            return null;
+        }
+
+        if (values == null) {
+            values = new String[offsets.length];
+        }
+
+        String value = values[index];
+        if (value == null) {
+            value = PercentEncodingUtil.decode(getRawValue(index));
+            values[index] = value;
+        }
+
+        return value;
+    }
+
+    /**
+     * @param rawName the raw name of the parameter
+     * @return the decoded value of the first parameter with the name or {@code null} if there is no such
+     * parameter or it has no {@code '='}
+     */
+    @Nullable
+    public String getValue(@Nonnull String rawName) {
+        int index = indexOf(rawName);
+        return index == -1 ? null : getValue(index);
+    }
+
+    /**
+     * @param rawName the raw name of the parameter
+     * @return the index of the first parameter with the name or {@code -1} if there is none
+     */
+    @Contract(pure = true)
+    public int indexOf(@Nonnull String rawName) {
+        return indexOf(rawName, 0);
+    }
+
+    /**
+     * Removes the parameter, indexes of the following parameters are decreased by one.
+     *
+     * @param index the index of the parameter
+     */
+    public void remove(int index) {
+        checkIndex(index);
+
+        int moveCount = size - index - 1;
+        System.arraycopy(offsets, index + 1, offsets, index, moveCount);
+        System.arraycopy(lengths, index + 1, lengths, index, moveCount);
+        System.arraycopy(nameLengths, index + 1, nameLengths, index, moveCount);
+        removeElement(sources, index, moveCount);
+        removeElement(names, index, moveCount);
+        removeElement(values, index, moveCount);
+
+        --size;
+        modified = true;
+    }
+
+    /**
+     * @param rawName the raw name of the parameters
+     * @return the number of removed parameters
+     */
+    public int remove(@Nonnull String rawName) {
+        int newSize = 0;
+
+        for (int index = 0; index < size; ++index) {
+            if (hasRawName(index, rawName)) {
+                continue;
+            }
+
+            if (newSize != index) {
+                offsets[newSize] = offsets[index];
+                lengths[newSize] = lengths[index];
+                nameLengths[newSize] = nameLengths[index];
+                moveElement(sources, index, newSize);
+                moveElement(names, index, newSize);
+                moveElement(values, index, newSize);
+            }
+
+            ++newSize;
+        }
+
+        int removedCount = size - newSize;
+        if (removedCount > 0) {
+            clearElements(sources, newSize, size);
+            clearElements(names, newSize, size);
+            clearElements(values, newSize, size);
+            size = newSize;
+            modified = true;
+        }
+
+        return removedCount;
+    }
+
+    /**
+     * Sets the value of the first parameter with the name and removes other parameters with this name. Appends
+     * the parameter if there is no such one.
+     *
+     * @param rawName  the raw name of the parameter
+     * @param rawValue the raw value of the parameter, the parameter with a blank value has no {@code '='}
+     */
+    public void replace(@Nonnull String rawName, @Nullable String rawValue) {
+        int index = indexOf(rawName);
+
+        if (index == -1) {
+            add(rawName, rawValue);
+            return;
+        }
+
+        set(index, rawName, rawValue);
+
+        for (int nextIndex; (nextIndex = indexOf(rawName, index + 1)) != -1; ) {
+            remove(nextIndex);
+        }
+    }
+
+    /**
+     * Appends the parameter.
+     *
+     * @param rawName  the raw name of the parameter
+     * @param rawValue the raw value of the parameter, the parameter with a blank value has no {@code '='}
+     */
+    public void add(@Nonnull String rawName, @Nullable String rawValue) {
+        add(size, rawName, rawValue);
+    }
+
+    /**
+     * Inserts the parameter, indexes of the following parameters are increased by one.
+     *
+     * @param index    the index to insert the parameter at
+     * @param rawName  the raw name of the parameter
+     * @param rawValue the raw value of the parameter, the parameter with a blank value has no {@code '='}
+     */
+    public void add(int index, @Nonnull String rawName, @Nullable String rawValue) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size + '.');
+        }
+
+        if (size == offsets.length) {
+            grow();
+        }
+
+        int moveCount = size - index;
+        System.arraycopy(offsets, index, offsets, index + 1, moveCount);
+        System.arraycopy(lengths, index, lengths, index + 1, moveCount);
+        System.arraycopy(nameLengths, index, nameLengths, index + 1, moveCount);
+        insertElement(sources, index, moveCount);
+        insertElement(names, index, moveCount);
+        insertElement(values, index, moveCount);
+
+        ++size;
+        set(index, rawName, rawValue);
+    }
+
+    /**
+     * @return the raw query, the original one if it has not been modified
+     */
+    @Override
+    public String toString() {
+        if (!modified && (query.isEmpty() || query.charAt(0) != '&')) {
+            return query;
+        }
+
+        StringBuilder result = new StringBuilder(query.length() + 16);
+
+        for (int index = 0; index < size; ++index) {
+            if (result.length() > 0) {
+                result.append('&');
+            }
+
+            int offset = offsets[index];
+            result.append(getSource(index), offset, offset + lengths[index]);
+        }
+
+        return result.toString();
+    }
+
+    private void set(int index, @Nonnull String rawName, @Nullable String rawValue) {
+        String parameter = StringUtil.isBlank(rawValue) ? rawName : rawName + '=' + rawValue;
+
+        if (sources == null) {
+            sources = new String[offsets.length];
+        }
+
+        sources[index] = parameter;
+        offsets[index] = 0;
+        lengths[index] = parameter.length();
+        nameLengths[index] = rawName.length();
+        clearElements(names, index, index + 1);
+        clearElements(values, index, index + 1);
+
+        modified = true;
+    }
+
+    private int indexOf(@Nonnull String rawName, int from) {
+        for (int index = from; index < size; ++index) {
+            if (hasRawName(index, rawName)) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Works the same way as {@code parameter.equals(rawName) || parameter.startsWith(rawName + '=')}.
+     */
+    private boolean hasRawName(int index, @Nonnull String rawName) {
+        int nameLength = rawName.length();
+        int length = lengths[index];
+        int offset = offsets[index];
+        String source = getSource(index);
+
+        return (length == nameLength || length > nameLength && source.charAt(offset + nameLength) == '=')
+                && source.regionMatches(offset, rawName, 0, nameLength);
+    }
+
+    @Nonnull
+    private String getSource(int index) {
+        String source;
+        return sources == null || (source = sources[index]) == null ? query : source;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size + '.');
+        }
+    }
+
+    private void grow() {
+        int capacity = offsets.length << 1;
+
+        int[] tempOffsets = new int[capacity];
+        System.arraycopy(offsets, 0, tempOffsets, 0, size);
+        offsets = tempOffsets;
+
+        int[] tempLengths = new int[capacity];
+        System.arraycopy(lengths, 0, tempLengths, 0, size);
+        lengths = tempLengths;
+
+        int[] tempNameLengths = new int[capacity];
+        System.arraycopy(nameLengths, 0, tempNameLengths, 0, size);
+        nameLengths = tempNameLengths;
+
+        sources = copyOf(sources, capacity);
+        names = copyOf(names, capacity);
+        values = copyOf(values, capacity);
+    }
+
+    @Nullable
+    private String[] copyOf(@Nullable String[] array, int capacity) {
+        if (array == null) {
+            return null;
+        }
+
+        String[] tempArray = new String[capacity];
+        System.arraycopy(array, 0, tempArray, 0, size);
+        return tempArray;
+    }
+
+    private static void removeElement(@Nullable String[] array, int index, int moveCount) {
+        if (array != null) {
+            System.arraycopy(array, index + 1, array, index, moveCount);
+            array[index + moveCount] = null;
+        }
+    }
+
+    private static void insertElement(@Nullable String[] array, int index, int moveCount) {
+        if (array != null) {
+            System.arraycopy(array, index, array, index + 1, moveCount);
+            array[index] = null;
+        }
+    }
+
+    private static void moveElement(@Nullable String[] array, int fromIndex, int toIndex) {
+        if (array != null) {
+            array[toIndex] = array[fromIndex];
+        }
+    }
+
+    private static void clearElements(@Nullable String[] array, int fromIndex, int toIndex) {
+        if (array != null) {
+            Arrays.fill(array, fromIndex, toIndex, null);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package ru.sladethe.common.text;
+
+import org.jetbrains.annotations.Contract;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.*;
+
+import static java.lang.StrictMath.max;
+import static java.lang.StrictMath.min;
+
+/**
+ * Replaces many targets in a single pass using the precompiled Aho-Corasick automaton.
+ * <p>
+ * Matches are selected with the leftmost-longest semantics: the match starting at the smallest index wins,
+ * among matches starting at the same index the longest one wins. Replaced text is never scanned again.
+ * The instance is immutable and thread-safe, so it should be created once and reused.
+ *
+ * @author Maxim Shipko (sladethe@gmail.com)
+ * @see StringUtil#replaceAll(String, Map)
+ */
+@SuppressWarnings("WeakerAccess")
+public final class Replacer {
+    private final int[] targetLengths;
+    private final String[] replacements;
+    private final int extraCapacity;
+
+    private final int[] edgeOffsets;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] failures;
+    private final int[] depths;
+    private final int[] matchLengths;
+    private final int[] matchTargetIndexes;
+
+    /**
+     * @param replacementByTarget replacements by targets, entries with an empty target
+     *                            or a {@code null} replacement are ignored
+     */
+    public Replacer(@Nonnull Map<String, String> replacementByTarget) {
+        List<String> targets = new ArrayList<>(replacementByTarget.size());
+        List<String> replacements = new ArrayList<>(replacementByTarget.size());
+
+        for (Map.Entry<String, String> entry : replacementByTarget.entrySet()) {
+            if (StringUtil.isNotEmpty(entry.getKey()) && entry.getValue() != null) {
+                targets.add(entry.getKey());
+                replacements.add(entry.getValue());
+            }
+        }
+
+        int targetCount = targets.size();
+        this.targetLengths = new int[targetCount];
+        this.replacements = replacements.toArray(new String[0]);
+
+        int minTargetLength = Integer.MAX_VALUE;
+        int maxReplacementLength = 0;
+
+        List<TreeMap<Character, Integer>> childrenByState = new ArrayList<>();
+        List<Integer> depthByState = new ArrayList<>();
+        List<Integer> targetIndexByState = new ArrayList<>();
+
+        childrenByState.add(new TreeMap<>());
+        depthByState.add(0);
+        targetIndexByState.add(-1);
+
+        for (int targetIndex = 0; targetIndex < targetCount; ++targetIndex) {
+            String target = targets.get(targetIndex);
+            int targetLength = target.length();
+
+            targetLengths[targetIndex] = targetLength;
+            minTargetLength = min(minTargetLength, targetLength);
+            maxReplacementLength = max(maxReplacementLength, this.replacements[targetIndex].length());
+
+            int state = 0;
+
+            for (int i = 0; i < targetLength; ++i) {
+                Integer nextState = childrenByState.get(state).get(target.charAt(i));
+                if (nextState == null) {
+                    nextState = childrenByState.size();
+                    childrenByState.get(state).put(target.charAt(i), nextState);
+                    childrenByState.add(new TreeMap<>());
+                    depthByState.add(i + 1);
+                    targetIndexByState.add(-1);
+                }
+                state = nextState;
+            }
+
+            targetIndexByState.set(state, targetIndex);
+        }
+
+        this.extraCapacity = targetCount == 0 ? 0 : max(maxReplacementLength - minTargetLength, 0) << 4;
+
+        int stateCount = childrenByState.size();
+        this.edgeOffsets = new int[stateCount + 1];
+        this.edgeChars = new char[stateCount - 1];
+        this.edgeTargets = new int[stateCount - 1];
+        this.failures = new int[stateCount];
+        this.depths = new int[stateCount];
+        this.matchLengths = new int[stateCount];
+        this.matchTargetIndexes = new int[stateCount];
+
+        for (int state = 0, edgeIndex = 0; state < stateCount; ++state) {
+            edgeOffsets[state] = edgeIndex;
+            depths[state] = depthByState.get(state);
+
+            for (Map.Entry<Character, Integer> child : childrenByState.get(state).entrySet()) {
+                edgeChars[edgeIndex] = child.getKey();
+                edgeTargets[edgeIndex++] = child.getValue();
+            }
+
+            edgeOffsets[state + 1] = edgeIndex;
+        }
+
+        Arrays.fill(matchTargetIndexes, -1);
+
+        Deque<Integer> stateQueue = new ArrayDeque<>();
+        stateQueue.add(0);
+
+        while (!stateQueue.isEmpty()) {
+            int state = stateQueue.poll();
+
+            for (int edgeIndex = edgeOffsets[state]; edgeIndex < edgeOffsets[state + 1]; ++edgeIndex) {
+                int nextState = edgeTargets[edgeIndex];
+                failures[nextState] = state == 0 ? 0 : getNextState(failures[state], edgeChars[edgeIndex]);
+
+                int targetIndex = targetIndexByState.get(nextState);
+                if (targetIndex == -1) {
+                    matchLengths[nextState] = matchLengths[failures[nextState]];
+                    matchTargetIndexes[nextState] = matchTargetIndexes[failures[nextState]];
+                } else {
+                    matchLengths[nextState] = depths[nextState];
+                    matchTargetIndexes[nextState] = targetIndex;
+                }
+
+                stateQueue.add(nextState);
+            }
+        }
+    }
+
+    /**
+     * @param s the string to replace targets in
+     * @return the string with all targets replaced or {@code s} itself if it contains no targets
+     */
+    @Contract(value = "null -> null; !null -> !null", pure = true)
+    @Nullable
+    public String replace(@Nullable String s) {
+        if (StringUtil.isEmpty(s)) {
+            return s;
+        }
+
+        long match = findNextMatch(s, 0);
+        if (match == -1L) {
+            return s;
+        }
+
+        StringBuilder result = new StringBuilder(s.length() + extraCapacity);
+        int i = 0;
+
+        do {
+            int matchStart = (int) (match >>> Integer.SIZE);
+            int targetIndex = (int) match;
+
+            result.append(s, i, matchStart).append(replacements[targetIndex]);
+            i = matchStart + targetLengths[targetIndex];
+            match = findNextMatch(s, i);
+        } while (match != -1L);
+
+        return result.append(s, i, s.length()).toString();
+    }
+
+    /**
+     * Appends the char sequence with all targets replaced.
+     *
+     * @param s   the char sequence to replace targets in
+     * @param out the appendable to write the result to
+     * @throws IOException if the appendable throws it
+     */
+    public void replace(@Nonnull CharSequence s, @Nonnull Appendable out) throws IOException {
+        int length = s.length();
+        int i = 0;
+
+        for (long match; (match = findNextMatch(s, i)) != -1L; ) {
+            int matchStart = (int) (match >>> Integer.SIZE);
+            int targetIndex = (int) match;
+
+            out.append(s, i, matchStart).append(replacements[targetIndex]);
+            i = matchStart + targetLengths[targetIndex];
+        }
+
+        out.append(s, i, length);
+    }
+
+    /**
+     * Finds the leftmost-longest match. The scan stops as soon as no longer or more left match is possible.
+     *
+     * @return the match start in the high half and the target index in the low half or {@code -1}
+     */
+    private long findNextMatch(@Nonnull CharSequence s, int from) {
+        int length = s.length();
+        int state = 0;
+        int matchStart = -1;
+        int matchTargetIndex = -1;
+
+        for (int i = from; i < length; ++i) {
+            state = getNextState(state, s.charAt(i));
+
+            int matchLength = matchLengths[state];
+            if (matchLength > 0) {
+                int start = i + 1 - matchLength;
+                if (matchStart == -1 || start <= matchStart) {
+                    matchStart = start;
+                    matchTargetIndex = matchTargetIndexes[state];
+                }
+            }
+
+            if (matchStart != -1 && i + 1 - depths[state] > matchStart) {
+                break;
+            }
+        }
+
+        return matchStart == -1 ? -1L : (long) matchStart << Integer.SIZE | matchTargetIndex;
+    }
+
+    private int getNextState(int state, char c) {
+        while (true) {
+            int edgeIndex = Arrays.binarySearch(edgeChars, edgeOffsets[state], edgeOffsets[state + 1], c);
+            if (edgeIndex >= 0) {
+                return edgeTargets[edgeIndex];
+            }
+
+            if (state == 0) {
+                return 0;
+            }
+
+            state = failures[state];
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ru.sladethe.common.text;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Precomputed key to compare strings in the same order as {@link StringUtil#compareStringsSmart(String, String)}.
+ * <p>
+ * The string is tokenized once: bounds and values of its digit groups are stored in the key, so the comparison
+ * neither searches for digits nor parses numbers. Use keys to sort large collections, where each string takes part
+ * in many comparisons.
+ *
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("WeakerAccess")
+public final class SmartSortKey implements Comparable<SmartSortKey> {
+    private static final int[] EMPTY_GROUP_BOUNDS = {};
+    private static final long[] EMPTY_GROUP_VALUES = {};
+
+    private final String string;
+    private final int[] groupBounds;
+    private final long[] groupValues;
+
+    public SmartSortKey(@Nonnull String string) {
+        this.string = string;
+
+        int length = string.length();
+        int groupCount = 0;
+
+        for (int i = 0; i < length; ) {
+            if (Character.isDigit(string.charAt(i))) {
+                ++groupCount;
+                do {
+                    ++i;
+                } while (i < length && Character.isDigit(string.charAt(i)));
+            } else {
+                ++i;
+            }
+        }
+
+        if (groupCount == 0) {
+            this.groupBounds = EMPTY_GROUP_BOUNDS;
+            this.groupValues = EMPTY_GROUP_VALUES;
+            return;
+        }
+
+        this.groupBounds = new int[groupCount << 1];
+        this.groupValues = new long[groupCount];
+
+        for (int i = 0, groupIndex = 0; i < length; ) {
+            if (Character.isDigit(string.charAt(i))) {
+                int groupStart = i;
+                do {
+                    ++i;
+                } while (i < length && Character.isDigit(string.charAt(i)));
+
+                groupBounds[groupIndex << 1] = groupStart;
+                groupBounds[(groupIndex << 1) + 1] = i;
+                groupValues[groupIndex++] = StringUtil.parseDigitGroup(string, groupStart, i);
+            } else {
+                ++i;
+            }
+        }
+    }
+
+    @Nonnull
+    public String getString() {
+        return string;
+    }
+
+    @Override
+    public int compareTo(@Nonnull SmartSortKey key) {
+        String stringA = string;
+        String stringB = key.string;
+        int lengthA = stringA.length();
+        int lengthB = stringB.length();
+        int groupCountA = groupValues.length;
+        int groupCountB = key.groupValues.length;
+
+        int offsetA = 0;
+        int offsetB = 0;
+        int groupIndexA = 0;
+        int groupIndexB = 0;
+
+        while (true) {
+            int groupStartA = groupIndexA < groupCountA ? groupBounds[groupIndexA << 1] : lengthA;
+            int groupStartB = groupIndexB < groupCountB ? key.groupBounds[groupIndexB << 1] : lengthB;
+
+            while (offsetA < groupStartA) {
+                if (offsetB < groupStartB) {
+                    char charA = stringA.charAt(offsetA);
+                    char charB = stringB.charAt(offsetB);
+                    if (charA != charB) {
+                        return (int) charA - (int) charB;
+                    }
+                } else {
+                    return 1;
+                }
+
+                ++offsetA;
+                ++offsetB;
+            }
+
+            if (offsetB < groupStartB) {
+                return -1;
+            }
+
+            if (groupIndexA == groupCountA) {
+                return groupIndexB == groupCountB ? 0 : -1;
+            }
+
+            if (groupIndexB == groupCountB) {
+                return 1;
+            }
+
+            offsetA = groupBounds[(groupIndexA << 1) + 1];
+            offsetB = key.groupBounds[(groupIndexB << 1) + 1];
+
+            int groupComparisonResult = StringUtil.compareDigitGroups(
+                    stringA, groupStartA, offsetA, groupValues[groupIndexA++],
+                    stringB, groupStartB, offsetB, key.groupValues[groupIndexB++]
+            );
+
+            if (groupComparisonResult != 0) {
+                return groupComparisonResult;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return string;
+    }
+}
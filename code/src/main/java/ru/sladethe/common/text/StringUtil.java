@@ -1,11 +1,16 @@
 package ru.sladethe.common.text;
 
+import org.apache.commons.io.input.CharSequenceReader;
 import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.text.translate.*;
 import org.jetbrains.annotations.Contract;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -17,37 +22,92 @@ import static java.lang.StrictMath.*;
  */
 @SuppressWarnings("WeakerAccess")
 public final class StringUtil {
-    private static final CharSequenceTranslator ESCAPE_JAVA_RETAIN_CYRILLIC = new LookupTranslator(
-            ((Supplier<Map<CharSequence, CharSequence>>) () -> {
-                Map<CharSequence, CharSequence> lookupMap = new HashMap<>();
-                lookupMap.put("\"", "\\\"");
-                lookupMap.put("\\", "\\\\");
-                return Collections.unmodifiableMap(lookupMap);
-            }).get()
-    ).with(
-            new LookupTranslator(EntityArrays.JAVA_CTRL_CHARS_ESCAPE)
-    ).with(
-            JavaUnicodeEscaper.below(32)
-    ).with(
-            JavaUnicodeEscaper.between(128, (int) 'Ё' - 1)
-    ).with(
-            JavaUnicodeEscaper.between((int) 'Ё' + 1, (int) 'А' - 1)
-    ).with(
-            JavaUnicodeEscaper.between((int) 'я' + 1, (int) 'ё' - 1)
-    ).with(
-            JavaUnicodeEscaper.above((int) 'ё')
-    );
+    /**
+     * Byte order marks, longer marks go first: UTF-32 (LE) mark starts with UTF-16 (LE) one.
+     */
+    private static final byte[][] BOMS = {
+            {0, 0, (byte) 0xFE, (byte) 0xFF},
+            {(byte) 0xFF, (byte) 0xFE, 0, 0},
+            {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF},
+            {(byte) 0xFE, (byte) 0xFF},
+            {(byte) 0xFF, (byte) 0xFE}
+    };
+
+    private static final Charset[] BOM_CHARSETS = {
+            Charset.forName("UTF-32BE"),
+            Charset.forName("UTF-32LE"),
+            StandardCharsets.UTF_8,
+            StandardCharsets.UTF_16BE,
+            StandardCharsets.UTF_16LE
+    };
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Escapes of chars up to the last retained Cyrillic char, {@code null} means the char is retained.
+     * All chars after it are escaped as Unicode.
+     */
+    private static final String[] JAVA_ESCAPE_RETAIN_CYRILLIC_BY_CHAR = ((Supplier<String[]>) () -> {
+        String[] escapes = new String['ё' + 1];
+
+        for (char c = 0; c < escapes.length; ++c) {
+            if (c < 32 || c >= 128 && c != 'Ё' && c != 'ё' && (c < 'А' || c > 'я')) {
+                escapes[c] = toJavaUnicodeEscape(c);
+            }
+        }
+
+        escapes['"'] = "\\\"";
+        escapes['\\'] = "\\\\";
+        escapes['\b'] = "\\b";
+        escapes['\n'] = "\\n";
+        escapes['\t'] = "\\t";
+        escapes['\f'] = "\\f";
+        escapes['\r'] = "\\r";
+
+        return escapes;
+    }).get();
+
+    /**
+     * Minimal number of strings to sort using precomputed {@link SmartSortKey keys}.
+     */
+    private static final int SMART_SORT_KEY_THRESHOLD = 256;
+
+    /**
+     * Minimal number of strings to sort in parallel.
+     */
+    private static final int PARALLEL_SMART_SORT_THRESHOLD = 1 << 13;
 
     static final char NON_BREAKING_SPACE = (char) 160;
     static final char THIN_SPACE = '\u2009';
     static final char ZERO_WIDTH_SPACE = '\u200B';
 
+    /**
+     * Bit {@code i} is set iff {@code Character.isWhitespace((char) i)}. There are no whitespaces
+     * in {@code [64, 256)} except for the non-breaking space.
+     */
+    private static final long ASCII_WHITESPACE_MASK = 1L << '\t' | 1L << '\n' | 1L << '\u000B' | 1L << '\f'
+            | 1L << '\r' | 1L << '\u001C' | 1L << '\u001D' | 1L << '\u001E' | 1L << '\u001F' | 1L << ' ';
+
     private StringUtil() {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * @param c the char to check
+     * @return {@code true} iff {@code c} is a {@link Character#isWhitespace(char) Java whitespace},
+     * a non-breaking space or a zero width space
+     */
+    @Contract(pure = true)
     public static boolean isWhitespace(char c) {
-        return Character.isWhitespace(c) || c == NON_BREAKING_SPACE || c == ZERO_WIDTH_SPACE;
+        if (c < 64) {
+            return (ASCII_WHITESPACE_MASK & 1L << c) != 0L;
+        }
+
+        if (c < 256) {
+            return c == NON_BREAKING_SPACE;
+        }
+
+        return c == ZERO_WIDTH_SPACE || Character.isWhitespace(c);
     }
 
     /**
@@ -439,6 +499,101 @@ public final class StringUtil {
         return tempParts;
     }
 
+    /**
+     * Splits given string using separator char. All empty parts are included in the result.
+     *
+     * @param s         the string to be split
+     * @param separator the delimiting character
+     * @param limit     the maximal number of parts, the last part contains the rest of the string;
+     *                  a zero or negative value means no limit
+     * @return the array of string parts
+     */
+    @Nonnull
+    public static String[] split(@Nonnull String s, char separator, int limit) {
+        if (limit <= 0) {
+            return split(s, separator);
+        }
+
+        int length = s.length();
+        int start = 0;
+        List<String> parts = new ArrayList<>(min(limit, 16));
+
+        for (int i = 0; i < length && parts.size() + 1 < limit; ++i) {
+            if (s.charAt(i) == separator) {
+                parts.add(s.substring(start, i));
+                start = i + 1;
+            }
+        }
+
+        parts.add(s.substring(start));
+        return parts.toArray(new String[0]);
+    }
+
+    /**
+     * Splits given char sequence using separator char without creating the parts. All empty parts are counted.
+     * The start (inclusive) and the end (exclusive) indexes of the part {@code i} are written to
+     * {@code bounds[2 * i]} and {@code bounds[2 * i + 1]}. If the sequence contains more parts than
+     * {@code bounds.length / 2}, the last written part contains the rest of the sequence.
+     *
+     * @param s         the char sequence to be split
+     * @param separator the delimiting character
+     * @param bounds    reusable array to write part bounds to, its length should be at least {@code 2}
+     * @return the number of written parts
+     */
+    public static int split(@Nonnull CharSequence s, char separator, @Nonnull int[] bounds) {
+        int maxCount = bounds.length >> 1;
+        if (maxCount == 0) {
+            throw new IllegalArgumentException("Argument 'bounds' should have length of at least 2.");
+        }
+
+        int length = s.length();
+        int start = 0;
+        int count = 0;
+
+        for (int i = 0; i < length && count + 1 < maxCount; ++i) {
+            if (s.charAt(i) == separator) {
+                bounds[count << 1] = start;
+                bounds[(count << 1) + 1] = i;
+                ++count;
+                start = i + 1;
+            }
+        }
+
+        bounds[count << 1] = start;
+        bounds[(count << 1) + 1] = length;
+        return count + 1;
+    }
+
+    /**
+     * Lazily splits given char sequence using separator char. All empty parts are included in the result.
+     * Parts are returned as views of the sequence, so skipped parts cost nothing
+     * and the sequence should not be modified during the iteration.
+     *
+     * @param s         the char sequence to be split
+     * @param separator the delimiting character
+     * @return the iterator over views of the parts
+     */
+    @Nonnull
+    public static Iterator<CharSequence> splitIterator(@Nonnull CharSequence s, char separator) {
+        return new SplitIterator(s, separator, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lazily splits given char sequence using separator char. All empty parts are included in the result.
+     * Parts are returned as views of the sequence, so skipped parts cost nothing
+     * and the sequence should not be modified during the iteration.
+     *
+     * @param s         the char sequence to be split
+     * @param separator the delimiting character
+     * @param limit     the maximal number of parts, the last part contains the rest of the sequence;
+     *                  a zero or negative value means no limit
+     * @return the iterator over views of the parts
+     */
+    @Nonnull
+    public static Iterator<CharSequence> splitIterator(@Nonnull CharSequence s, char separator, int limit) {
+        return new SplitIterator(s, separator, limit <= 0 ? Integer.MAX_VALUE : limit);
+    }
+
     @Contract(value = "null, _, _ -> null; !null, _, _ -> !null", pure = true)
     @Nullable
     public static String replace(@Nullable String s, @Nullable String target, @Nullable String replacement) {
@@ -468,6 +623,25 @@ public final class StringUtil {
         return result.append(s.substring(i)).toString();
     }
 
+    /**
+     * Replaces all targets in a single pass. Matches are selected with the leftmost-longest semantics.
+     * Use {@link Replacer} directly to replace the same targets in many strings.
+     *
+     * @param s                   the string to replace targets in
+     * @param replacementByTarget replacements by targets, entries with an empty target
+     *                            or a {@code null} replacement are ignored
+     * @return the string with all targets replaced
+     */
+    @Contract(value = "null, _ -> null; !null, _ -> !null", pure = true)
+    @Nullable
+    public static String replaceAll(@Nullable String s, @Nullable Map<String, String> replacementByTarget) {
+        if (isEmpty(s) || replacementByTarget == null || replacementByTarget.isEmpty()) {
+            return s;
+        }
+
+        return new Replacer(replacementByTarget).replace(s);
+    }
+
     /**
      * @param s         Given string.
      * @param maxLength Maximal length.
@@ -585,34 +759,170 @@ public final class StringUtil {
         return result;
     }
 
-    public static String cropLines(String input, int maxLineLength, int maxLineNumber) {
+    /**
+     * Splits input into lines the same way {@link Patterns#LINE_BREAK_PATTERN} does, reads lines lazily
+     * and stops as soon as the line limit is exceeded. Only the first {@code maxLineLength} chars of each line
+     * are kept in memory.
+     *
+     * @param input         the input to crop
+     * @param maxLineLength the maximal length of a line, longer lines are cropped and appended with "..."
+     * @param maxLineNumber the maximal number of lines, the rest lines are replaced with "..."
+     * @return the cropped lines joined with CRLF or {@code input} itself if it is {@code null} or empty
+     */
+    @Contract("null, _, _ -> null; !null, _, _ -> !null")
+    @Nullable
+    public static String cropLines(@Nullable String input, int maxLineLength, int maxLineNumber) {
         if (isEmpty(input)) {
             return input;
         }
 
-        String[] lines = Patterns.LINE_BREAK_PATTERN.split(input);
-        StringBuilder result = new StringBuilder((maxLineLength + 5) * maxLineNumber + 5);
+        return cropLines((CharSequence) input, maxLineLength, maxLineNumber);
+    }
+
+    /**
+     * @see #cropLines(String, int, int)
+     */
+    @Nonnull
+    public static String cropLines(@Nonnull CharSequence input, int maxLineLength, int maxLineNumber) {
+        try {
+            return cropLines(new CharSequenceReader(input), maxLineLength, maxLineNumber);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected I/O error while reading char sequence.", e);
+        }
+    }
+
+    /**
+     * @throws IOException if an I/O error occurs
+     * @see #cropLines(String, int, int)
+     */
+    @Nonnull
+    public static String cropLines(
+            @Nonnull Reader reader, int maxLineLength, int maxLineNumber) throws IOException {
+        LineReader lineReader = new LineReader(reader, maxLineLength, 0);
+        StringBuilder result = new StringBuilder();
+
+        int lineCount = 0;
+        int pendingEmptyLineCount = 0;
 
-        for (int i = 0; i < maxLineNumber && i < lines.length; ++i) {
-            String line = lines[i];
+        while (lineCount <= maxLineNumber && lineReader.readLine()) {
+            if (lineReader.isLineEmpty()) {
+                ++pendingEmptyLineCount;
+                continue;
+            }
 
-            String croppedLine;
-            if (line.length() > maxLineLength) {
-                croppedLine = line.substring(0, maxLineLength) + "...";
-            } else {
-                croppedLine = line;
+            for (; pendingEmptyLineCount > 0 && lineCount <= maxLineNumber; --pendingEmptyLineCount) {
+                if (lineCount++ < maxLineNumber) {
+                    result.append("\r\n");
+                }
             }
 
-            result.append(croppedLine).append("\r\n");
+            if (lineCount++ < maxLineNumber) {
+                lineReader.appendCroppedLine(result, maxLineLength);
+                result.append("\r\n");
+            }
         }
 
-        if (lines.length > maxLineNumber) {
+        if (lineCount > maxLineNumber) {
             result.append("...\r\n");
         }
 
         return result.toString();
     }
 
+    /**
+     * Splits input into lines the same way {@link Patterns#LINE_BREAK_PATTERN} does and shrinks them
+     * the same way {@link #shrinkLinesTo(List, int, int)} does. Lines are read lazily: only the lines to return
+     * are kept in memory, and each line is shrunk while it is read.
+     *
+     * @param input         the input to split into lines and to shrink
+     * @param maxLineLength the maximal length of a line
+     * @param maxLineCount  the maximal number of lines
+     * @return the shrunk lines
+     */
+    @Nonnull
+    public static List<String> shrinkLinesTo(@Nonnull CharSequence input, int maxLineLength, int maxLineCount) {
+        try {
+            return shrinkLinesTo(new CharSequenceReader(input), maxLineLength, maxLineCount);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected I/O error while reading char sequence.", e);
+        }
+    }
+
+    /**
+     * @throws IOException if an I/O error occurs
+     * @see #shrinkLinesTo(CharSequence, int, int)
+     */
+    @Nonnull
+    public static List<String> shrinkLinesTo(
+            @Nonnull Reader reader, int maxLineLength, int maxLineCount) throws IOException {
+        if (maxLineLength < 8) {
+            throw new IllegalArgumentException("Argument maxLength is expected to be at least 8.");
+        }
+
+        if (maxLineCount < 3) {
+            throw new IllegalArgumentException("Argument 'maxLineCount' is expected to be at least 3.");
+        }
+
+        int prefixLineCount = maxLineCount / 2;
+        int postfixLineCount = maxLineCount - prefixLineCount - 1;
+
+        LineReader lineReader = new LineReader(reader, maxLineLength, maxLineLength - maxLineLength / 2 - 3);
+        List<String> firstLines = new ArrayList<>();
+        Deque<String> lastLines = new ArrayDeque<>(postfixLineCount + 1);
+
+        int lineCount = 0;
+        int pendingEmptyLineCount = 0;
+
+        while (lineReader.readLine()) {
+            if (lineReader.isLineEmpty()) {
+                ++pendingEmptyLineCount;
+                continue;
+            }
+
+            for (; pendingEmptyLineCount > 0; --pendingEmptyLineCount) {
+                addShrunkLine("", lineCount++, maxLineCount, postfixLineCount, firstLines, lastLines);
+            }
+
+            addShrunkLine(
+                    lineReader.getShrunkLine(maxLineLength), lineCount++, maxLineCount, postfixLineCount,
+                    firstLines, lastLines
+            );
+        }
+
+        if (lineCount == 0 && !lineReader.isLineBreakFound()) {
+            firstLines.add("");
+            return firstLines;
+        }
+
+        if (lineCount <= maxLineCount) {
+            return firstLines;
+        }
+
+        List<String> result = new ArrayList<>(maxLineCount);
+        result.addAll(firstLines.subList(0, prefixLineCount));
+        result.add("...");
+
+        for (int lineIndex = lineCount - postfixLineCount; lineIndex < maxLineCount; ++lineIndex) {
+            result.add(firstLines.get(lineIndex));
+        }
+
+        result.addAll(lastLines);
+        return result;
+    }
+
+    private static void addShrunkLine(
+            @Nonnull String line, int lineIndex, int maxLineCount, int postfixLineCount,
+            @Nonnull List<String> firstLines, @Nonnull Deque<String> lastLines) {
+        if (lineIndex < maxLineCount) {
+            firstLines.add(line);
+        } else {
+            lastLines.addLast(line);
+            if (lastLines.size() > postfixLineCount) {
+                lastLines.removeFirst();
+            }
+        }
+    }
+
     /**
      * Compares two strings by splitting them on character groups.
      *
@@ -626,9 +936,6 @@ public final class StringUtil {
         int lengthA = stringA.length();
         int lengthB = stringB.length();
 
-        StringBuilder numberGroupA = new StringBuilder();
-        StringBuilder numberGroupB = new StringBuilder();
-
         int offsetA = 0;
         int offsetB = 0;
 
@@ -653,78 +960,241 @@ public final class StringUtil {
                 return -1;
             }
 
-            while (offsetA < lengthA && Character.isDigit(charA = stringA.charAt(offsetA))) {
-                numberGroupA.append(charA);
+            int groupStartA = offsetA;
+            while (offsetA < lengthA && Character.isDigit(stringA.charAt(offsetA))) {
                 ++offsetA;
             }
 
-            while (offsetB < lengthB && Character.isDigit(charB = stringB.charAt(offsetB))) {
-                numberGroupB.append(charB);
+            int groupStartB = offsetB;
+            while (offsetB < lengthB && Character.isDigit(stringB.charAt(offsetB))) {
                 ++offsetB;
             }
 
-            if (numberGroupA.length() == 0) {
-                return numberGroupB.length() == 0 ? 0 : -1;
+            if (offsetA == groupStartA) {
+                return offsetB == groupStartB ? 0 : -1;
             }
 
-            if (numberGroupB.length() == 0) {
+            if (offsetB == groupStartB) {
                 return 1;
             }
 
-            String groupValueA = numberGroupA.toString();
-            String groupValueB = numberGroupB.toString();
+            int groupComparisonResult = compareDigitGroups(
+                    stringA, groupStartA, offsetA, parseDigitGroup(stringA, groupStartA, offsetA),
+                    stringB, groupStartB, offsetB, parseDigitGroup(stringB, groupStartB, offsetB)
+            );
 
-            numberGroupA.setLength(0);
-            numberGroupB.setLength(0);
-
-            long numberA;
-            try {
-                numberA = Long.parseLong(groupValueA);
-            } catch (NumberFormatException ignored) {
-                int numberAsStringComparisonResult = groupValueA.compareTo(groupValueB);
-                if (numberAsStringComparisonResult == 0) {
-                    continue;
-                } else {
-                    return numberAsStringComparisonResult;
-                }
+            if (groupComparisonResult != 0) {
+                return groupComparisonResult;
             }
+        }
+    }
 
-            long numberB;
-            try {
-                numberB = Long.parseLong(groupValueB);
-            } catch (NumberFormatException ignored) {
-                return groupValueA.compareTo(groupValueB);
-            }
+    /**
+     * @return the value of the digit group or {@code -1} if it does not fit {@code long}
+     */
+    static long parseDigitGroup(@Nonnull String s, int start, int end) {
+        long value = 0L;
 
-            if (numberA > numberB) {
-                return 1;
+        for (int i = start; i < end; ++i) {
+            int digit = Character.digit(s.charAt(i), 10);
+            if (value > (Long.MAX_VALUE - digit) / 10L) {
+                return -1L;
             }
+            value = value * 10L + digit;
+        }
 
-            if (numberA < numberB) {
-                return -1;
-            }
+        return value;
+    }
+
+    /**
+     * Compares digit groups by their values. Groups which do not fit {@code long} and groups having the same value
+     * but the different length are compared as strings.
+     *
+     * @return the comparison result or {@code 0} if the comparison should go on
+     */
+    static int compareDigitGroups(@Nonnull String stringA, int startA, int endA, long valueA,
+                                  @Nonnull String stringB, int startB, int endB, long valueB) {
+        if (valueA < 0L || valueB < 0L) {
+            return compareRegions(stringA, startA, endA, stringB, startB, endB);
+        }
+
+        if (valueA != valueB) {
+            return valueA > valueB ? 1 : -1;
+        }
+
+        return endA - startA == endB - startB ? 0 : compareRegions(stringA, startA, endA, stringB, startB, endB);
+    }
 
-            if (groupValueA.length() != groupValueB.length()) {
-                return groupValueA.compareTo(groupValueB);
+    /**
+     * @return the same result as {@code stringA.substring(startA, endA).compareTo(stringB.substring(startB, endB))}
+     */
+    private static int compareRegions(@Nonnull String stringA, int startA, int endA,
+                                      @Nonnull String stringB, int startB, int endB) {
+        int lengthA = endA - startA;
+        int lengthB = endB - startB;
+
+        for (int i = 0, commonLength = min(lengthA, lengthB); i < commonLength; ++i) {
+            char charA = stringA.charAt(startA + i);
+            char charB = stringB.charAt(startB + i);
+            if (charA != charB) {
+                return (int) charA - (int) charB;
             }
         }
+
+        return lengthA - lengthB;
     }
 
     public static void sortStringsSmart(@Nonnull String[] strings) {
-        Arrays.sort(strings, StringUtil::compareStringsSmart);
+        int count = strings.length;
+        if (count < SMART_SORT_KEY_THRESHOLD) {
+            Arrays.sort(strings, StringUtil::compareStringsSmart);
+            return;
+        }
+
+        SmartSortKey[] keys = new SmartSortKey[count];
+        for (int i = 0; i < count; ++i) {
+            keys[i] = new SmartSortKey(strings[i]);
+        }
+
+        Arrays.sort(keys);
+
+        for (int i = 0; i < count; ++i) {
+            strings[i] = keys[i].getString();
+        }
     }
 
     public static void sortStringsSmart(@Nonnull List<String> strings) {
-        strings.sort(StringUtil::compareStringsSmart);
+        if (strings.size() < SMART_SORT_KEY_THRESHOLD) {
+            strings.sort(StringUtil::compareStringsSmart);
+            return;
+        }
+
+        String[] sortedStrings = strings.toArray(new String[0]);
+        sortStringsSmart(sortedStrings);
+
+        ListIterator<String> iterator = strings.listIterator();
+        for (String string : sortedStrings) {
+            iterator.next();
+            iterator.set(string);
+        }
+    }
+
+    /**
+     * Sorts strings in the same order as {@link #sortStringsSmart(String[])}, but uses all available processors
+     * to build {@link SmartSortKey keys} and to sort them. Small arrays are sorted sequentially.
+     *
+     * @param strings the strings to be sorted
+     */
+    public static void parallelSortStringsSmart(@Nonnull String[] strings) {
+        int count = strings.length;
+        if (count < PARALLEL_SMART_SORT_THRESHOLD) {
+            sortStringsSmart(strings);
+            return;
+        }
+
+        SmartSortKey[] keys = new SmartSortKey[count];
+        Arrays.parallelSetAll(keys, i -> new SmartSortKey(strings[i]));
+        Arrays.parallelSort(keys);
+        Arrays.parallelSetAll(strings, i -> keys[i].getString());
     }
 
+    /**
+     * Sorts strings in the same order as {@link #sortStringsSmart(List)}, but uses all available processors
+     * to build {@link SmartSortKey keys} and to sort them. Small lists are sorted sequentially.
+     *
+     * @param strings the strings to be sorted
+     */
+    public static void parallelSortStringsSmart(@Nonnull List<String> strings) {
+        if (strings.size() < PARALLEL_SMART_SORT_THRESHOLD) {
+            sortStringsSmart(strings);
+            return;
+        }
+
+        String[] sortedStrings = strings.toArray(new String[0]);
+        parallelSortStringsSmart(sortedStrings);
+
+        ListIterator<String> iterator = strings.listIterator();
+        for (String string : sortedStrings) {
+            iterator.next();
+            iterator.set(string);
+        }
+    }
+
+    /**
+     * Escapes string using Java string rules, but retains printable ASCII and Russian Cyrillic chars.
+     *
+     * @param s the string to be escaped
+     * @return the escaped string or {@code s} itself if it contains nothing to escape
+     */
     @Contract(value = "null -> null; !null -> !null", pure = true)
     @Nullable
     public static String escapeJavaRetainCyrillic(@Nullable String s) {
-        return s == null ? null : ESCAPE_JAVA_RETAIN_CYRILLIC.translate(s);
+        if (s == null) {
+            return null;
+        }
+
+        int length = s.length();
+        int i = 0;
+
+        while (i < length && getJavaEscapeRetainCyrillic(s.charAt(i)) == null) {
+            ++i;
+        }
+
+        if (i == length) {
+            return s;
+        }
+
+        StringBuilder result = new StringBuilder(length + 16);
+        int start = 0;
+
+        for (; i < length; ++i) {
+            String escape = getJavaEscapeRetainCyrillic(s.charAt(i));
+            if (escape != null) {
+                result.append(s, start, i).append(escape);
+                start = i + 1;
+            }
+        }
+
+        return result.append(s, start, length).toString();
     }
 
-    @SuppressWarnings({"IfStatementWithIdenticalBranches", "OverlyComplexMethod", "AssignmentOrReturnOfFieldWithMutableType"})
+    /**
+     * Appends char sequence escaped the same way as {@link #escapeJavaRetainCyrillic(String)} does.
+     *
+     * @param s   the char sequence to be escaped
+     * @param out the appendable to write the result to
+     * @throws IOException if the appendable throws it
+     */
+    public static void escapeJavaRetainCyrillic(@Nonnull CharSequence s, @Nonnull Appendable out) throws IOException {
+        int length = s.length();
+        int start = 0;
+
+        for (int i = 0; i < length; ++i) {
+            String escape = getJavaEscapeRetainCyrillic(s.charAt(i));
+            if (escape != null) {
+                out.append(s, start, i).append(escape);
+                start = i + 1;
+            }
+        }
+
+        out.append(s, start, length);
+    }
+
+    @Nullable
+    private static String getJavaEscapeRetainCyrillic(char c) {
+        return c < JAVA_ESCAPE_RETAIN_CYRILLIC_BY_CHAR.length
+                ? JAVA_ESCAPE_RETAIN_CYRILLIC_BY_CHAR[c]
+                : toJavaUnicodeEscape(c);
+    }
+
+    @Nonnull
+    private static String toJavaUnicodeEscape(char c) {
+        return new String(new char[] {
+                '\\', 'u', HEX_DIGITS[c >> 12], HEX_DIGITS[c >> 8 & 15], HEX_DIGITS[c >> 4 & 15], HEX_DIGITS[c & 15]
+        });
+    }
+
+    @SuppressWarnings("AssignmentOrReturnOfFieldWithMutableType")
     @Contract("null -> null; !null -> !null")
     @Nullable
     public static byte[] removeBoms(@Nullable byte[] bytes) {
@@ -734,28 +1204,7 @@ public final class StringUtil {
             return bytes;
         }
 
-        int bomLength;
-
-        if (bytes.length >= 3
-                && (bytes[0] & 0xFF) == 239 && (bytes[1] & 0xFF) == 187 && (bytes[2] & 0xFF) == 191) { // UTF-8
-            bomLength = 3;
-        } else if (bytes.length >= 2
-                && (bytes[0] & 0xFF) == 254 && (bytes[1] & 0xFF) == 255) { // UTF-16 (BE)
-            bomLength = 2;
-        } else if (bytes.length >= 2
-                && (bytes[0] & 0xFF) == 255 && (bytes[1] & 0xFF) == 254) { // UTF-16 (LE)
-            bomLength = 2;
-        } else if (bytes.length >= 4
-                && (bytes[0] & 0xFF) == 0 && (bytes[1] & 0xFF) == 0
-                && (bytes[0] & 0xFF) == 254 && (bytes[1] & 0xFF) == 255) { // UTF-32 (BE)
-            bomLength = 4;
-        } else if (bytes.length >= 4
-                && (bytes[0] & 0xFF) == 255 && (bytes[1] & 0xFF) == 254
-                && (bytes[0] & 0xFF) == 0 && (bytes[1] & 0xFF) == 0) { // UTF-32 (LE)
-            bomLength = 4;
-        } else {
-            bomLength = 0;
-        }
+        int bomLength = getBomLength(bytes, 0, byteCount);
 
         if (bomLength == 0) {
             return bytes;
@@ -765,9 +1214,64 @@ public final class StringUtil {
             return ArrayUtils.EMPTY_BYTE_ARRAY;
         }
 
-        byte[] processedBytes = new byte[byteCount - bomLength];
-        System.arraycopy(bytes, bomLength, processedBytes, 0, byteCount - bomLength);
-        return processedBytes;
+        return Arrays.copyOfRange(bytes, bomLength, byteCount);
+    }
+
+    /**
+     * Detects byte order mark without copying the bytes. Use the result as an offset to decode the rest in place:
+     * {@code new String(bytes, bomLength, bytes.length - bomLength, charset)}.
+     *
+     * @param bytes the bytes to check
+     * @return the length of the UTF-8, UTF-16 or UTF-32 byte order mark or {@code 0} if there is none
+     */
+    @Contract(pure = true)
+    public static int getBomLength(@Nullable byte[] bytes) {
+        return bytes == null ? 0 : getBomLength(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @param bytes  the bytes to check
+     * @param offset the index of the first byte to check
+     * @param length the number of bytes to check
+     * @return the length of the UTF-8, UTF-16 or UTF-32 byte order mark or {@code 0} if there is none
+     */
+    @Contract(pure = true)
+    public static int getBomLength(@Nonnull byte[] bytes, int offset, int length) {
+        int bomIndex = getBomIndex(bytes, offset, length);
+        return bomIndex == -1 ? 0 : BOMS[bomIndex].length;
+    }
+
+    /**
+     * @param bytes  the bytes to check
+     * @param offset the index of the first byte to check
+     * @param length the number of bytes to check
+     * @return the charset of the UTF-8, UTF-16 or UTF-32 byte order mark or {@code null} if there is none
+     */
+    @Contract(pure = true)
+    @Nullable
+    public static Charset getBomCharset(@Nonnull byte[] bytes, int offset, int length) {
+        int bomIndex = getBomIndex(bytes, offset, length);
+        return bomIndex == -1 ? null : BOM_CHARSETS[bomIndex];
+    }
+
+    private static int getBomIndex(@Nonnull byte[] bytes, int offset, int length) {
+        bomLoop:
+        for (int bomIndex = 0; bomIndex < BOMS.length; ++bomIndex) {
+            byte[] bom = BOMS[bomIndex];
+            if (length < bom.length) {
+                continue;
+            }
+
+            for (int i = 0; i < bom.length; ++i) {
+                if (bytes[offset + i] != bom[i]) {
+                    continue bomLoop;
+                }
+            }
+
+            return bomIndex;
+        }
+
+        return -1;
     }
 
     public static void ifNotEmpty(@Nullable String s, @Nonnull Consumer<String> consumer) {
@@ -781,4 +1285,157 @@ public final class StringUtil {
             consumer.accept(s);
         }
     }
+
+    private static final class SplitIterator implements Iterator<CharSequence> {
+        private final CharSequence s;
+        private final char separator;
+        private int remainingCount;
+        private int start;
+
+        private SplitIterator(@Nonnull CharSequence s, char separator, int limit) {
+            this.s = s;
+            this.separator = separator;
+            this.remainingCount = limit;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return start <= s.length();
+        }
+
+        @Override
+        public CharSequence next() {
+            int length = s.length();
+            if (start > length) {
+                throw new NoSuchElementException();
+            }
+
+            int end = length;
+
+            if (--remainingCount > 0) {
+                for (int i = start; i < length; ++i) {
+                    if (s.charAt(i) == separator) {
+                        end = i;
+                        break;
+                    }
+                }
+            }
+
+            CharSequence part = CharBuffer.wrap(s, start, end);
+            start = end + 1;
+            return part;
+        }
+    }
+
+    /**
+     * Reads lines separated by CRLF, CR or LF. Keeps the first chars and the last chars of the current line only.
+     */
+    private static final class LineReader {
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private int bufferOffset;
+        private int bufferLength;
+        private boolean finished;
+        private boolean lineBreakFound;
+
+        private final int headCapacity;
+        private final StringBuilder head = new StringBuilder();
+        @Nullable
+        private final char[] tail;
+        private long lineLength;
+
+        private LineReader(@Nonnull Reader reader, int headCapacity, int tailCapacity) {
+            this.reader = reader;
+            this.headCapacity = headCapacity;
+            this.tail = tailCapacity > 0 ? new char[tailCapacity] : null;
+        }
+
+        /**
+         * @return {@code true} if the next line has been read, the last line is read when the input ends
+         * even if it is empty
+         */
+        private boolean readLine() throws IOException {
+            if (finished) {
+                return false;
+            }
+
+            head.setLength(0);
+            lineLength = 0L;
+
+            while (true) {
+                if (bufferOffset == bufferLength && !fillBuffer()) {
+                    finished = true;
+                    return true;
+                }
+
+                char c = buffer[bufferOffset++];
+
+                if (c == '\n') {
+                    lineBreakFound = true;
+                    return true;
+                }
+
+                if (c == '\r') {
+                    lineBreakFound = true;
+                    if ((bufferOffset < bufferLength || fillBuffer()) && buffer[bufferOffset] == '\n') {
+                        ++bufferOffset;
+                    }
+                    return true;
+                }
+
+                if (lineLength < headCapacity) {
+                    head.append(c);
+                }
+
+                if (tail != null) {
+                    tail[(int) (lineLength % tail.length)] = c;
+                }
+
+                ++lineLength;
+            }
+        }
+
+        private boolean fillBuffer() throws IOException {
+            int readCharCount;
+            do {
+                readCharCount = reader.read(buffer);
+            } while (readCharCount == 0);
+
+            bufferOffset = 0;
+            bufferLength = max(readCharCount, 0);
+            return readCharCount > 0;
+        }
+
+        private boolean isLineBreakFound() {
+            return lineBreakFound;
+        }
+
+        private boolean isLineEmpty() {
+            return lineLength == 0L;
+        }
+
+        private void appendCroppedLine(@Nonnull StringBuilder result, int maxLineLength) {
+            result.append(head);
+            if (lineLength > maxLineLength) {
+                result.append("...");
+            }
+        }
+
+        @Nonnull
+        private String getShrunkLine(int maxLineLength) {
+            if (lineLength <= maxLineLength) {
+                return head.toString();
+            }
+
+            @SuppressWarnings("ConstantConditions") int tailLength = tail.length;
+            int tailStart = (int) (lineLength % tailLength);
+
+            return new StringBuilder(maxLineLength)
+                    .append(head, 0, maxLineLength / 2)
+                    .append("...")
+                    .append(tail, tailStart, tailLength - tailStart)
+                    .append(tail, 0, tailStart)
+                    .toString();
+        }
+    }
 }
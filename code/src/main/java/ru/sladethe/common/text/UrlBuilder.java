@@ -0,0 +1,126 @@
+package ru.sladethe.common.text;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Appends many parameters to the URL in a single buffer. The base URL is parsed and validated once, so appending
+ * {@code n} parameters takes linear time instead of the quadratic time of repeated
+ * {@link UrlUtil#appendParameterToUrl(String, String, String)} calls.
+ * <p>
+ * The result is the same as of {@link UrlUtil#appendParametersToUrl(String, String...)}: new parameters go
+ * in the order of appending right after the {@code '?'}, the original query and fragment follow them. Names and
+ * values are appended as is, so they should be already encoded. The builder is not thread-safe.
+ *
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("WeakerAccess")
+public final class UrlBuilder {
+    private final String url;
+    private final boolean validUri;
+    private final int prefixLength;
+    private final int postfixOffset;
+    private final boolean queryPresent;
+
+    @Nullable
+    private StringBuilder resultUrl;
+
+    /**
+     * @param url the base URL, if it is not a valid URI, all parameters are ignored
+     */
+    public UrlBuilder(@Nonnull String url) {
+        this.url = url;
+        this.validUri = UrlUtil.isValidUri(url);
+
+        int questionSignPos = url.indexOf('?');
+        int sharpPos = url.indexOf('#');
+
+        if (questionSignPos == -1 && sharpPos == -1) {
+            this.prefixLength = url.length();
+            this.postfixOffset = url.length();
+            this.queryPresent = false;
+        } else if (questionSignPos == -1 || sharpPos != -1 && questionSignPos > sharpPos) {
+            this.prefixLength = sharpPos;
+            this.postfixOffset = sharpPos;
+            this.queryPresent = false;
+        } else {
+            this.prefixLength = questionSignPos;
+            this.postfixOffset = questionSignPos + 1;
+            this.queryPresent = url.length() > questionSignPos + 1;
+        }
+    }
+
+    /**
+     * Appends the parameter. The parameter with a blank name is ignored, the parameter with a blank value
+     * is appended without {@code '='}.
+     *
+     * @param parameterName  the encoded parameter name
+     * @param parameterValue the encoded parameter value
+     * @return this builder
+     */
+    @Nonnull
+    public UrlBuilder appendParameter(@Nullable String parameterName, @Nullable String parameterValue) {
+        if (!validUri || StringUtil.isBlank(parameterName)) {
+            return this;
+        }
+
+        StringBuilder resultUrl = this.resultUrl;
+        if (resultUrl == null) {
+            resultUrl = new StringBuilder(url.length() + 64).append(url, 0, prefixLength).append('?');
+            this.resultUrl = resultUrl;
+        } else {
+            resultUrl.append('&');
+        }
+
+        resultUrl.append(parameterName);
+
+        if (!StringUtil.isBlank(parameterValue)) {
+            resultUrl.append('=').append(parameterValue);
+        }
+
+        return this;
+    }
+
+    /**
+     * @param parameterParts the encoded parameter names and values: {@code name1, value1, name2, value2, ...}
+     * @return this builder
+     * @see #appendParameter(String, String)
+     */
+    @Nonnull
+    public UrlBuilder appendParameters(@Nonnull String... parameterParts) {
+        int partCount = parameterParts.length;
+        if (partCount % 2 != 0) {
+            throw new IllegalArgumentException("Expected even number of parameter parts.");
+        }
+
+        for (int partIndex = 0; partIndex < partCount; partIndex += 2) {
+            appendParameter(parameterParts[partIndex], parameterParts[partIndex + 1]);
+        }
+
+        return this;
+    }
+
+    /**
+     * @return the URL with all appended parameters or the base URL itself if no parameters are appended
+     */
+    @Nonnull
+    public String build() {
+        if (resultUrl == null) {
+            return url;
+        }
+
+        int length = resultUrl.length();
+        if (queryPresent) {
+            resultUrl.append('&');
+        }
+
+        String result = resultUrl.append(url, postfixOffset, url.length()).toString();
+        resultUrl.setLength(length);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return build();
+    }
+}
@@ -9,8 +9,10 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.File;
 import java.net.*;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.IntStream;
 
 /**
  * @author Maxim Shipko (sladethe@gmail.com)
@@ -19,6 +21,15 @@ import java.util.Set;
 public final class UrlUtil {
     private static final String[] ALLOWED_SCHEMES = {"http", "https"};
 
+    /**
+     * Schemes allowed by {@link UrlValidator} if no schemes are specified.
+     */
+    private static final List<String> DEFAULT_URL_VALIDATOR_SCHEMES = Arrays.asList("http", "https", "ftp");
+
+    private static final int MAX_URL_VALIDATOR_CACHE_SIZE = 64;
+    private static final ConcurrentMap<List<String>, CachedUrlValidator> URL_VALIDATOR_BY_SCHEMES
+            = new ConcurrentHashMap<>();
+
     private UrlUtil() {
         throw new UnsupportedOperationException();
     }
@@ -35,15 +46,11 @@ public final class UrlUtil {
 
         String rawQuery = uri.getRawQuery();
         if (rawQuery != null) {
-            String[] parameters = StringUtil.split(rawQuery, '&');
-            int parameterCount = parameters.length;
+            QueryString queryString = new QueryString(rawQuery);
+            int parameterCount = queryString.size();
 
             for (int parameterIndex = 0; parameterIndex < parameterCount; ++parameterIndex) {
-                String parameter = parameters[parameterIndex];
-                int equalitySignPos = parameter.indexOf('=');
-                String parameterName = equalitySignPos == -1
-                        ? parameter.trim()
-                        : parameter.substring(0, equalitySignPos).trim();
+                String parameterName = queryString.getRawName(parameterIndex).trim();
                 if (!parameterName.isEmpty()) {
                     parameterNames.add(parameterName.toLowerCase());
                 }
@@ -153,51 +160,12 @@ public final class UrlUtil {
         }
     }
 
-    @SuppressWarnings("OverlyComplexMethod")
     public static String appendParametersToUrl(@Nonnull String url, @Nonnull String... parameterParts) {
-        int partCount = parameterParts.length;
-        if (!isValidUri(url) || partCount == 0) {
+        if (!isValidUri(url) || parameterParts.length == 0) {
             return url;
         }
 
-        if (partCount % 2 != 0) {
-            throw new IllegalArgumentException("Expected even number of parameter parts.");
-        }
-
-        int questionSignPos = url.indexOf('?');
-        int sharpPos = url.indexOf('#');
-
-        StringBuilder resultUrl;
-        String urlPostfix;
-
-        if (questionSignPos == -1 && sharpPos == -1) {
-            resultUrl = new StringBuilder(url);
-            urlPostfix = "";
-        } else if (questionSignPos == -1 || sharpPos != -1 && questionSignPos > sharpPos) {
-            resultUrl = new StringBuilder(url.substring(0, sharpPos));
-            urlPostfix = url.substring(sharpPos);
-        } else {
-            resultUrl = new StringBuilder(url.substring(0, questionSignPos));
-            urlPostfix = url.length() > questionSignPos + 1 ? '&' + url.substring(questionSignPos + 1) : "";
-        }
-
-        boolean firstParameter = true;
-
-        for (int partIndex = 0; partIndex < partCount; partIndex += 2) {
-            String parameterName = parameterParts[partIndex];
-            if (StringUtil.isBlank(parameterName)) {
-                continue;
-            }
-
-            String parameterValue = parameterParts[partIndex + 1];
-
-            String parameter = StringUtil.isBlank(parameterValue) ? parameterName : parameterName + '=' + parameterValue;
-
-            resultUrl.append(firstParameter ? '?' : '&').append(parameter);
-            firstParameter = false;
-        }
-
-        return firstParameter ? url : resultUrl.append(urlPostfix).toString();
+        return new UrlBuilder(url).appendParameters(parameterParts).build();
     }
 
     public static String appendRelativePathToUrl(@Nonnull String url, @Nullable String relativePath) {
@@ -237,14 +205,17 @@ public final class UrlUtil {
         return isValidUrl(url, ALLOWED_SCHEMES);
     }
 
+    /**
+     * Validates URL using {@link UrlValidator} with {@link UrlValidator#ALLOW_LOCAL_URLS}. Validators are cached
+     * per scheme set, and simple HTTP(S) URLs are accepted without the regex-based validation.
+     *
+     * @param url            the URL to validate
+     * @param allowedSchemes the allowed schemes or {@code null} to allow the default schemes of {@link UrlValidator}
+     * @return {@code true} iff the URL is valid
+     */
     @Contract("null, _ -> false")
     public static boolean isValidUrl(@Nullable String url, String[] allowedSchemes) {
-        if (StringUtil.isBlank(url)) {
-            return false;
-        }
-
-        UrlValidator urlValidator = new UrlValidator(allowedSchemes, UrlValidator.ALLOW_LOCAL_URLS);
-        return urlValidator.isValid(url);
+        return isValidUrl(url, getUrlValidator(allowedSchemes));
     }
 
     @SuppressWarnings("ResultOfMethodCallIgnored")
@@ -277,6 +248,221 @@ public final class UrlUtil {
         }
     }
 
+    /**
+     * Validates URLs in parallel.
+     *
+     * @param urls the URLs to validate
+     * @return the bit set with the {@code i}-th bit set iff the {@code i}-th URL is valid
+     * @see #isValidUrl(String)
+     */
+    @Nonnull
+    public static BitSet validateUrls(@Nonnull Collection<String> urls) {
+        return validateUrls(urls, ALLOWED_SCHEMES);
+    }
+
+    /**
+     * Validates URLs in parallel. Each thread validates its own block of 64 URLs, so the result is collected
+     * without synchronization.
+     *
+     * @param urls           the URLs to validate
+     * @param allowedSchemes the allowed schemes or {@code null} to allow the default schemes of {@link UrlValidator}
+     * @return the bit set with the {@code i}-th bit set iff the {@code i}-th URL is valid
+     * @see #isValidUrl(String, String[])
+     */
+    @Nonnull
+    public static BitSet validateUrls(@Nonnull Collection<String> urls, String[] allowedSchemes) {
+        String[] urlArray = urls.toArray(new String[0]);
+        int urlCount = urlArray.length;
+        CachedUrlValidator urlValidator = getUrlValidator(allowedSchemes);
+        long[] words = new long[(urlCount + Long.SIZE - 1) / Long.SIZE];
+
+        IntStream.range(0, words.length).parallel().forEach(wordIndex -> {
+            long word = 0L;
+
+            for (int bitIndex = 0, urlIndex = wordIndex * Long.SIZE;
+                 bitIndex < Long.SIZE && urlIndex < urlCount; ++bitIndex, ++urlIndex) {
+                if (isValidUrl(urlArray[urlIndex], urlValidator)) {
+                    word |= 1L << bitIndex;
+                }
+            }
+
+            words[wordIndex] = word;
+        });
+
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Normalizes URLs in parallel.
+     *
+     * @param urls the URLs to normalize
+     * @return the list of normalized URLs in the input order, {@code null} in place of each invalid URL
+     * @see #isValidUrl(String)
+     * @see #normalizeUrl(String)
+     */
+    @Nonnull
+    public static List<String> normalizeUrls(@Nonnull Collection<String> urls) {
+        return normalizeUrls(urls, ALLOWED_SCHEMES);
+    }
+
+    /**
+     * Normalizes URLs in parallel.
+     *
+     * @param urls           the URLs to normalize
+     * @param allowedSchemes the allowed schemes or {@code null} to allow the default schemes of {@link UrlValidator}
+     * @return the list of normalized URLs in the input order, {@code null} in place of each invalid URL
+     * @see #isValidUrl(String, String[])
+     * @see #normalizeUrl(String)
+     */
+    @Nonnull
+    public static List<String> normalizeUrls(@Nonnull Collection<String> urls, String[] allowedSchemes) {
+        String[] urlArray = urls.toArray(new String[0]);
+        CachedUrlValidator urlValidator = getUrlValidator(allowedSchemes);
+
+        Arrays.parallelSetAll(urlArray, urlIndex -> {
+            String url = urlArray[urlIndex];
+            return isValidUrl(url, urlValidator) ? normalizeUrl(url) : null;
+        });
+
+        return Arrays.asList(urlArray);
+    }
+
+    /**
+     * Normalizes URI: lowercases the scheme and the host, removes the default port of the HTTP, HTTPS and FTP
+     * schemes and sorts the query parameters by name. Parameters with the same name keep their order, empty
+     * parameters are removed. Other parts are kept as is.
+     *
+     * @param url the URI to normalize
+     * @return the normalized URI or {@code null} if the argument is not a valid URI
+     */
+    @Contract("null -> null")
+    @Nullable
+    public static String normalizeUrl(@Nullable String url) {
+        if (url == null) {
+            return null;
+        }
+
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (RuntimeException ignored) {
+            return null;
+        }
+
+        String scheme = uri.getScheme();
+        if (uri.isOpaque()) {
+            return scheme.toLowerCase(Locale.ENGLISH) + ':' + uri.getRawSchemeSpecificPart()
+                    + (uri.getRawFragment() == null ? "" : '#' + uri.getRawFragment());
+        }
+
+        StringBuilder result = new StringBuilder(url.length());
+
+        if (scheme != null) {
+            result.append(scheme.toLowerCase(Locale.ENGLISH)).append(':');
+        }
+
+        String host = uri.getHost();
+        if (host != null) {
+            result.append("//");
+
+            if (uri.getRawUserInfo() != null) {
+                result.append(uri.getRawUserInfo()).append('@');
+            }
+
+            result.append(host.toLowerCase(Locale.ENGLISH));
+
+            int port = uri.getPort();
+            if (port != -1 && port != getDefaultPort(scheme)) {
+                result.append(':').append(port);
+            }
+        } else if (uri.getRawAuthority() != null) {
+            result.append("//").append(uri.getRawAuthority());
+        }
+
+        if (uri.getRawPath() != null) {
+            result.append(uri.getRawPath());
+        }
+
+        if (uri.getRawQuery() != null) {
+            appendSortedQuery(uri.getRawQuery(), result);
+        }
+
+        if (uri.getRawFragment() != null) {
+            result.append('#').append(uri.getRawFragment());
+        }
+
+        return result.toString();
+    }
+
+    @Contract("null, _ -> false")
+    private static boolean isValidUrl(@Nullable String url, @Nonnull CachedUrlValidator urlValidator) {
+        return !StringUtil.isBlank(url) && (urlValidator.isSimpleValidUrl(url) || urlValidator.isValid(url));
+    }
+
+    @Nonnull
+    private static CachedUrlValidator getUrlValidator(@Nullable String[] allowedSchemes) {
+        List<String> schemes = allowedSchemes == null ? DEFAULT_URL_VALIDATOR_SCHEMES : Arrays.asList(
+                allowedSchemes.clone()
+        );
+
+        CachedUrlValidator urlValidator = URL_VALIDATOR_BY_SCHEMES.get(schemes);
+        if (urlValidator != null) {
+            return urlValidator;
+        }
+
+        urlValidator = new CachedUrlValidator(schemes);
+        if (URL_VALIDATOR_BY_SCHEMES.size() < MAX_URL_VALIDATOR_CACHE_SIZE) {
+            CachedUrlValidator cachedUrlValidator = URL_VALIDATOR_BY_SCHEMES.putIfAbsent(schemes, urlValidator);
+            if (cachedUrlValidator != null) {
+                return cachedUrlValidator;
+            }
+        }
+        return urlValidator;
+    }
+
+    private static int getDefaultPort(@Nullable String scheme) {
+        if ("http".equalsIgnoreCase(scheme)) {
+            return 80;
+        } else if ("https".equalsIgnoreCase(scheme)) {
+            return 443;
+        } else if ("ftp".equalsIgnoreCase(scheme)) {
+            return 21;
+        } else {
+            return -1;
+        }
+    }
+
+    private static void appendSortedQuery(@Nonnull String rawQuery, @Nonnull StringBuilder result) {
+        QueryString queryString = new QueryString(rawQuery);
+        int parameterCount = queryString.size();
+        List<String[]> parameters = new ArrayList<>(parameterCount);
+
+        for (int parameterIndex = 0; parameterIndex < parameterCount; ++parameterIndex) {
+            String parameterName = queryString.getRawName(parameterIndex);
+            String parameterValue = queryString.getRawValue(parameterIndex);
+
+            if (!parameterName.isEmpty() || parameterValue != null) {
+                parameters.add(new String[] {parameterName, parameterValue});
+            }
+        }
+
+        if (parameters.isEmpty()) {
+            return;
+        }
+
+        parameters.sort(Comparator.comparing(parameter -> parameter[0]));
+
+        char separator = '?';
+
+        for (String[] parameter : parameters) {
+            result.append(separator).append(parameter[0]);
+            if (parameter[1] != null) {
+                result.append('=').append(parameter[1]);
+            }
+            separator = '&';
+        }
+    }
+
     @Contract(value = "null, _ -> null; _, null -> null", pure = true)
     @Nullable
     private static String removeParameterFromQuery(@Nullable String query, @Nullable String parameterName) {
@@ -284,29 +470,101 @@ public final class UrlUtil {
             return query;
         }
 
-        String[] parameters = StringUtil.split(query, '&');
-        int parameterCount = parameters.length;
-
-        StringBuilder queryBuilder = new StringBuilder(query.length());
+        QueryString queryString = new QueryString(query);
+        queryString.remove(parameterName);
+        return queryString.toString();
+    }
 
-        for (int parameterIndex = 0; parameterIndex < parameterCount; ++parameterIndex) {
-            String parameter = parameters[parameterIndex];
-            if (parameter.startsWith(parameterName + '=') || parameterName.equals(parameter)) {
-                continue;
+    /**
+     * Thread-safe {@link UrlValidator} with a fast path for simple HTTP(S) URLs.
+     * <p>
+     * This is the only user of {@link DomainValidator} here, so the TLD tables are patched when the first validator
+     * is created rather than when {@link UrlUtil} is loaded. {@link DomainValidator} rejects overrides after its
+     * first {@link DomainValidator#getInstance() instance} is created, for example by another library, then
+     * the unpatched tables are used and {@code "lo"} domains are not accepted.
+     */
+    private static final class CachedUrlValidator {
+        private final UrlValidator urlValidator;
+        private final boolean httpAllowed;
+        private final boolean httpsAllowed;
+
+        static {
+            String[] validDomains = DomainValidator.getTLDEntries(DomainValidator.ArrayType.GENERIC_PLUS);
+            try {
+                DomainValidator.updateTLDOverride(
+                        DomainValidator.ArrayType.GENERIC_PLUS, ArrayUtils.add(validDomains, "lo")
+                );
+            } catch (IllegalStateException ignored) {
+                // DomainValidator is already in use, the override can't be applied.
             }
+        }
+
+        private CachedUrlValidator(@Nonnull List<String> allowedSchemes) {
+            this.urlValidator = new UrlValidator(
+                    allowedSchemes.toArray(new String[0]), UrlValidator.ALLOW_LOCAL_URLS
+            );
+
+            boolean httpAllowed = false;
+            boolean httpsAllowed = false;
 
-            if (queryBuilder.length() > 0) {
-                queryBuilder.append('&');
+            for (String scheme : allowedSchemes) {
+                httpAllowed |= "http".equalsIgnoreCase(scheme);
+                httpsAllowed |= "https".equalsIgnoreCase(scheme);
             }
 
-            queryBuilder.append(parameter);
+            this.httpAllowed = httpAllowed;
+            this.httpsAllowed = httpsAllowed;
         }
 
-        return queryBuilder.toString();
-    }
+        private boolean isValid(@Nonnull String url) {
+            return urlValidator.isValid(url);
+        }
+
+        /**
+         * Accepts URLs like {@code http://host.domain/path?query} without regex matching. Returns {@code true}
+         * only if {@link UrlValidator} also accepts the URL, any unusual URL is left to the validator.
+         */
+        private boolean isSimpleValidUrl(@Nonnull String url) {
+            int hostStart;
+            if (httpAllowed && url.startsWith("http://")) {
+                hostStart = "http://".length();
+            } else if (httpsAllowed && url.startsWith("https://")) {
+                hostStart = "https://".length();
+            } else {
+                return false;
+            }
+
+            int length = url.length();
+            int hostEnd = hostStart;
+
+            for (char c; hostEnd < length && (c = url.charAt(hostEnd)) != '/'; ++hostEnd) {
+                if (!(c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '-' || c == '.')) {
+                    return false;
+                }
+            }
+
+            int i = hostEnd;
 
-    static {
-        String[] validDomains = DomainValidator.getTLDEntries(DomainValidator.ArrayType.GENERIC_PLUS);
-        DomainValidator.updateTLDOverride(DomainValidator.ArrayType.GENERIC_PLUS, ArrayUtils.add(validDomains, "lo"));
+            for (char c, previousChar = 0; i < length && (c = url.charAt(i)) != '?'; previousChar = c, ++i) {
+                if (c == '/' ? previousChar == '/' : c == '.' ? previousChar == '/' : !isSimplePathChar(c)) {
+                    return false;
+                }
+            }
+
+            for (; i < length; ++i) {
+                char c = url.charAt(i);
+                if (c <= ' ' || c >= 127 || c == '#') {
+                    return false;
+                }
+            }
+
+            return hostEnd > hostStart
+                    && DomainValidator.getInstance(true).isValid(url.substring(hostStart, hostEnd));
+        }
+
+        private static boolean isSimplePathChar(char c) {
+            return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                    || c == '-' || c == '_' || c == '~';
+        }
     }
 }
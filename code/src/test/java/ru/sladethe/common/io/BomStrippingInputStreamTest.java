@@ -0,0 +1,60 @@
+package ru.sladethe.common.io;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("MessageMissingOnJUnitAssertion")
+public class BomStrippingInputStreamTest {
+    @Test
+    public void stripBom() throws IOException {
+        byte[] bytes = "﻿текст".getBytes(StandardCharsets.UTF_8);
+
+        try (BomStrippingInputStream inputStream = new BomStrippingInputStream(new ByteArrayInputStream(bytes))) {
+            assertEquals(StandardCharsets.UTF_8, inputStream.getCharset());
+            assertEquals("текст", IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+        }
+
+        bytes = "﻿text".getBytes(StandardCharsets.UTF_16LE);
+
+        try (BomStrippingInputStream inputStream = new BomStrippingInputStream(new OneByteInputStream(bytes))) {
+            assertEquals('t', inputStream.read());
+            assertEquals(StandardCharsets.UTF_16LE, inputStream.getCharset());
+            assertEquals(1L, inputStream.skip(1L));
+            assertEquals("ext", IOUtils.toString(inputStream, StandardCharsets.UTF_16LE));
+        }
+    }
+
+    @Test
+    public void keepBytesWithoutBom() throws IOException {
+        for (String s : new String[] {"", "a", "ab", "abc", "abcd", "abcde"}) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+
+            try (BomStrippingInputStream inputStream = new BomStrippingInputStream(new OneByteInputStream(bytes))) {
+                assertArrayEquals(bytes, IOUtils.toByteArray(inputStream));
+                assertNull(inputStream.getCharset());
+                assertEquals(-1, inputStream.read());
+            }
+        }
+    }
+
+    private static final class OneByteInputStream extends FilterInputStream {
+        private OneByteInputStream(byte[] bytes) {
+            super(new ByteArrayInputStream(bytes));
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            return super.read(bytes, offset, Math.min(length, 1));
+        }
+    }
+}
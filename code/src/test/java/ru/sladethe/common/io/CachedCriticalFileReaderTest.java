@@ -0,0 +1,81 @@
+package ru.sladethe.common.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+/**
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("MessageMissingOnJUnitAssertion")
+public class CachedCriticalFileReaderTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void getBytes() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "critical.bin");
+        List<String> reloadedValues = new ArrayList<>();
+
+        try (CachedCriticalFileReader reader = new CachedCriticalFileReader(
+                file, FileUtil.getCriticalBackupFile(file), false,
+                (reloadedFile, bytes) -> reloadedValues.add(new String(bytes, UTF_8))
+        )) {
+            try {
+                reader.getBytes();
+                fail("Missing file is not detected.");
+            } catch (IOException ignored) {
+                // Expected.
+            }
+
+            FileUtil.writeCriticalFile(file, "first".getBytes(UTF_8));
+            assertEquals("first", new String(reader.getBytes(), UTF_8));
+
+            byte[] bytes = reader.getBytes();
+            bytes[0] = 'F';
+            assertEquals("first", new String(reader.getBytes(), UTF_8));
+
+            FileUtil.writeCriticalFile(file, "second".getBytes(UTF_8));
+            assertEquals("second", new String(reader.getBytes(), UTF_8));
+
+            FileUtil.writeCriticalFile(file, "third!".getBytes(UTF_8));
+            assertEquals("third!", new String(reader.getBytes(), UTF_8));
+            assertEquals("third!", new String(reader.getBytes(), UTF_8));
+
+            reader.invalidate();
+            assertEquals("third!", new String(reader.getBytes(), UTF_8));
+        }
+
+        assertEquals(2, reloadedValues.size());
+        assertEquals("second", reloadedValues.get(0));
+        assertEquals("third!", reloadedValues.get(1));
+    }
+
+    @Test
+    public void skipUnchangedFile() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "critical.bin");
+        long lastModified = (System.currentTimeMillis()
+                - 2L * CachedCriticalFileReader.RACY_MODIFICATION_INTERVAL_MILLIS) / 1000L * 1000L;
+
+        FileUtil.writeCriticalFile(file, "value".getBytes(UTF_8));
+        assertTrue(file.setLastModified(lastModified));
+
+        CachedCriticalFileReader reader = new CachedCriticalFileReader(file);
+        assertEquals("value", new String(reader.getBytes(), UTF_8));
+
+        FileUtil.writeCriticalFile(file, "VALUE".getBytes(UTF_8));
+        assertTrue(file.setLastModified(lastModified));
+        assertEquals("value", new String(reader.getBytes(), UTF_8));
+
+        reader.invalidate();
+        assertEquals("VALUE", new String(reader.getBytes(), UTF_8));
+    }
+}
@@ -0,0 +1,327 @@
+package ru.sladethe.common.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("MessageMissingOnJUnitAssertion")
+public class CriticalStoreTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void putGetRemove() throws IOException {
+        try (CriticalStore store = CriticalStore.open(temporaryFolder.getRoot())) {
+            assertNull(store.get("a"));
+            assertFalse(store.remove("a"));
+
+            store.put("a", bytes("1"));
+            store.put("b", bytes("2"));
+            store.put("a", bytes("3"));
+
+            assertArrayEquals(bytes("3"), store.get("a"));
+            assertArrayEquals(bytes("2"), store.get("b"));
+            assertEquals(2, store.size());
+
+            assertTrue(store.remove("b"));
+            assertNull(store.get("b"));
+            assertFalse(store.contains("b"));
+            assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    public void reopen() throws IOException {
+        File directory = temporaryFolder.getRoot();
+        Map<String, byte[]> expectedValueByKey = fill(directory, 1000);
+
+        try (CriticalStore store = CriticalStore.open(directory, 4096L, false)) {
+            assertStoreEquals(expectedValueByKey, store);
+
+            store.put("unindexed", bytes("value"));
+            expectedValueByKey.put("unindexed", bytes("value"));
+            store.remove("key0");
+            expectedValueByKey.remove("key0");
+        }
+
+        try (CriticalStore store = CriticalStore.open(directory, 4096L, false)) {
+            assertStoreEquals(expectedValueByKey, store);
+        }
+    }
+
+    @Test
+    public void reopenWithoutIndex() throws IOException {
+        File directory = temporaryFolder.getRoot();
+        Map<String, byte[]> expectedValueByKey = fill(directory, 1000);
+
+        File indexFile = new File(directory, "index.dat");
+        assertTrue(indexFile.delete());
+
+        try (CriticalStore store = CriticalStore.open(directory, 4096L, false)) {
+            assertStoreEquals(expectedValueByKey, store);
+        }
+    }
+
+    @Test
+    public void truncateTornRecord() throws IOException {
+        File directory = temporaryFolder.getRoot();
+
+        try (CriticalStore store = CriticalStore.open(directory)) {
+            store.put("a", bytes("1"));
+            store.checkpoint();
+            store.put("a", bytes("2"));
+        }
+
+        File segmentFile = new File(directory, "segment-00000000.dat");
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+            file.setLength(file.length() - 1L);
+        }
+
+        try (CriticalStore store = CriticalStore.open(directory)) {
+            assertArrayEquals(bytes("1"), store.get("a"));
+            store.put("b", bytes("3"));
+        }
+
+        try (CriticalStore store = CriticalStore.open(directory)) {
+            assertArrayEquals(bytes("1"), store.get("a"));
+            assertArrayEquals(bytes("3"), store.get("b"));
+        }
+    }
+
+    @Test
+    public void truncateZeroFilledTail() throws IOException {
+        File directory = temporaryFolder.getRoot();
+
+        try (CriticalStore store = CriticalStore.open(directory)) {
+            store.put("a", bytes("1"));
+            store.put("b", bytes("2"));
+        }
+
+        File segmentFile = new File(directory, "segment-00000000.dat");
+        long segmentLength = segmentFile.length();
+
+        for (boolean indexPresent : new boolean[] {true, false}) {
+            if (!indexPresent) {
+                assertTrue(new File(directory, "index.dat").delete());
+            }
+
+            try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+                file.setLength(segmentLength + 100L);
+            }
+
+            try (CriticalStore store = CriticalStore.open(directory)) {
+                assertEquals(segmentLength, segmentFile.length());
+                assertArrayEquals(bytes("1"), store.get("a"));
+                assertArrayEquals(bytes("2"), store.get("b"));
+            }
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+            file.setLength(segmentLength + 100L);
+            file.seek(segmentLength + 50L);
+            file.write(1);
+        }
+
+        assertTrue(new File(directory, "index.dat").delete());
+        assertOpenFails(directory, segmentFile, segmentLength);
+    }
+
+    @Test
+    public void truncateTornRecordAfterRollover() throws IOException {
+        File directory = temporaryFolder.getRoot();
+        byte[] value = new byte[60];
+
+        try (CriticalStore store = CriticalStore.open(directory, 100L, false)) {
+            store.put("a", value);
+            store.put("b", value);
+            store.put("c", value);
+        }
+
+        assertTrue(new File(directory, "index.dat").delete());
+
+        File rolledOverSegmentFile = new File(directory, "segment-00000001.dat");
+        File lastSegmentFile = new File(directory, "segment-00000002.dat");
+        long rolledOverSegmentLength = rolledOverSegmentFile.length();
+
+        try (RandomAccessFile file = new RandomAccessFile(lastSegmentFile, "rw")) {
+            file.setLength(file.length() - 1L);
+        }
+
+        try (CriticalStore store = CriticalStore.open(directory, 100L, false)) {
+            assertArrayEquals(value, store.get("a"));
+            assertArrayEquals(value, store.get("b"));
+            assertFalse(store.contains("c"));
+            assertEquals(0L, lastSegmentFile.length());
+            assertEquals(rolledOverSegmentLength, rolledOverSegmentFile.length());
+        }
+
+        // The rolled over segment is forced before the next one is created, so its torn tail is a corruption.
+        assertTrue(new File(directory, "index.dat").delete());
+        try (RandomAccessFile file = new RandomAccessFile(rolledOverSegmentFile, "rw")) {
+            file.setLength(rolledOverSegmentLength - 1L);
+        }
+
+        assertOpenFails(directory, rolledOverSegmentFile, 0L);
+    }
+
+    @Test
+    public void failOnCorruptedRecordInMiddleOfSegment() throws IOException {
+        File directory = temporaryFolder.getRoot();
+
+        try (CriticalStore store = CriticalStore.open(directory)) {
+            store.put("a", bytes("1"));
+            store.put("b", bytes("2"));
+            store.put("c", bytes("3"));
+        }
+
+        assertTrue(new File(directory, "index.dat").delete());
+
+        File segmentFile = new File(directory, "segment-00000000.dat");
+        long segmentLength = segmentFile.length();
+        long recordLength = segmentLength / 3L;
+        flipByte(segmentFile, recordLength + recordLength / 2L);
+
+        assertOpenFails(directory, segmentFile, recordLength);
+        assertEquals(segmentLength, segmentFile.length());
+    }
+
+    @Test
+    public void failOnCorruptedNonLastSegmentWithoutIndex() throws IOException {
+        File directory = temporaryFolder.getRoot();
+        fill(directory, 1000);
+
+        assertTrue(new File(directory, "index.dat").delete());
+
+        File segmentFile = new File(directory, "segment-00000000.dat");
+        assertTrue(new File(directory, "segment-00000001.dat").isFile());
+        long segmentLength = segmentFile.length();
+        flipByte(segmentFile, 20L);
+
+        assertOpenFails(directory, segmentFile, 0L);
+        assertEquals(segmentLength, segmentFile.length());
+    }
+
+    @Test
+    public void compact() throws IOException {
+        File directory = temporaryFolder.getRoot();
+        Map<String, byte[]> expectedValueByKey = fill(directory, 1000);
+
+        try (CriticalStore store = CriticalStore.open(directory, 4096L, false)) {
+            for (int i = 0; i < 1000; i += 2) {
+                store.remove("key" + i);
+                expectedValueByKey.remove("key" + i);
+            }
+
+            assertTrue(store.getGarbageByteCount() > 0L);
+            store.compact();
+            assertEquals(0L, store.getGarbageByteCount());
+            assertStoreEquals(expectedValueByKey, store);
+        }
+
+        try (CriticalStore store = CriticalStore.open(directory, 4096L, false)) {
+            assertStoreEquals(expectedValueByKey, store);
+        }
+    }
+
+    @Test
+    public void compactWithFailedIndexWrite() throws IOException {
+        File directory = temporaryFolder.getRoot();
+        Map<String, byte[]> expectedValueByKey = fill(directory, 1000);
+        File indexFile = new File(directory, "index.dat");
+
+        try (CriticalStore store = CriticalStore.open(directory, 4096L, false)) {
+            File[] segmentFiles = listSegmentFiles(directory);
+
+            assertTrue(indexFile.delete());
+            assertTrue(indexFile.mkdir());
+
+            try {
+                store.compact();
+                fail("Compaction with failed index write succeeded.");
+            } catch (IOException ignored) {
+                // Expected.
+            }
+
+            assertArrayEquals(segmentFiles, listSegmentFiles(directory));
+            assertStoreEquals(expectedValueByKey, store);
+            assertTrue(indexFile.delete());
+
+            store.compact();
+            assertStoreEquals(expectedValueByKey, store);
+        }
+
+        try (CriticalStore store = CriticalStore.open(directory, 4096L, false)) {
+            assertStoreEquals(expectedValueByKey, store);
+        }
+    }
+
+    private static File[] listSegmentFiles(File directory) {
+        File[] segmentFiles = directory.listFiles((dir, name) -> name.startsWith("segment-"));
+        assertNotNull(segmentFiles);
+        Arrays.sort(segmentFiles);
+        return segmentFiles;
+    }
+
+    private static void flipByte(File file, long position) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(position);
+            int value = randomAccessFile.read();
+            randomAccessFile.seek(position);
+            randomAccessFile.write(value ^ 0x10);
+        }
+    }
+
+    private static void assertOpenFails(File directory, File segmentFile, long recordOffset) {
+        try {
+            CriticalStore.open(directory, 4096L, false).close();
+            fail("Store with corrupted record is opened.");
+        } catch (IOException e) {
+            assertEquals("Record in '" + segmentFile + "' at " + recordOffset + " is corrupted.", e.getMessage());
+        }
+    }
+
+    private static Map<String, byte[]> fill(File directory, int keyCount) throws IOException {
+        Random random = new Random(keyCount);
+        Map<String, byte[]> valueByKey = new HashMap<>();
+
+        try (CriticalStore store = CriticalStore.open(directory, 4096L, false)) {
+            for (int i = 0; i < 3 * keyCount; ++i) {
+                String key = "key" + random.nextInt(keyCount);
+                byte[] value = new byte[random.nextInt(100)];
+                random.nextBytes(value);
+
+                store.put(key, value);
+                valueByKey.put(key, value);
+            }
+        }
+
+        return valueByKey;
+    }
+
+    private static void assertStoreEquals(Map<String, byte[]> expectedValueByKey, CriticalStore store)
+            throws IOException {
+        assertEquals(expectedValueByKey.keySet(), store.getKeys());
+
+        for (Map.Entry<String, byte[]> entry : expectedValueByKey.entrySet()) {
+            assertArrayEquals(entry.getValue(), store.get(entry.getKey()));
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
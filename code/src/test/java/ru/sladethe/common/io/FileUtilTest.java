@@ -0,0 +1,176 @@
+package ru.sladethe.common.io;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("MessageMissingOnJUnitAssertion")
+public class FileUtilTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writeAndReadCriticalFile() throws IOException {
+        byte[] bytes = getCompressibleBytes();
+
+        for (FileUtil.CriticalFileCodec codec : FileUtil.CriticalFileCodec.values()) {
+            File file = new File(temporaryFolder.getRoot(), "critical-" + codec + ".bin");
+
+            FileUtil.writeCriticalFile(file, bytes, codec);
+            assertArrayEquals(bytes, FileUtil.getCriticalFileBytes(file));
+            assertFalse(FileUtil.getCriticalBackupFile(file).exists());
+
+            FileUtil.writeCriticalFile(file, new byte[0], codec);
+            assertArrayEquals(new byte[0], FileUtil.getCriticalFileBytes(file));
+        }
+    }
+
+    @Test
+    public void compressedCriticalFileIsSmaller() throws IOException {
+        byte[] bytes = getCompressibleBytes();
+
+        File file = temporaryFolder.newFile("critical.bin");
+        FileUtil.writeCriticalFile(file, bytes, FileUtil.CriticalFileCodec.DEFLATE_FAST);
+
+        assertTrue(file.length() < bytes.length / 2);
+    }
+
+    @Test
+    public void readLegacyCriticalFile() throws IOException {
+        byte[] bytes = "SCF\u0001\u0002 legacy payload starting with a magic".getBytes(StandardCharsets.UTF_8);
+
+        File file = temporaryFolder.newFile("critical.bin");
+        FileUtils.writeByteArrayToFile(file, bytes);
+        FileUtils.writeByteArrayToFile(file, DigestUtils.sha256(bytes), true);
+
+        assertArrayEquals(bytes, FileUtil.getCriticalFileBytes(file));
+    }
+
+    @Test
+    public void restoreCorruptedCriticalFileFromBackup() throws IOException {
+        byte[] bytes = getCompressibleBytes();
+
+        File file = temporaryFolder.newFile("critical.bin");
+        File backupFile = FileUtil.getCriticalBackupFile(file);
+
+        FileUtil.writeCriticalFile(file, bytes, FileUtil.CriticalFileCodec.DEFLATE);
+        FileUtils.copyFile(file, backupFile);
+
+        byte[] fileBytes = FileUtils.readFileToByteArray(file);
+        fileBytes[fileBytes.length / 2] ^= 1;
+        FileUtils.writeByteArrayToFile(file, fileBytes);
+
+        assertArrayEquals(bytes, FileUtil.getCriticalFileBytes(file));
+        assertFalse(backupFile.exists());
+        assertArrayEquals(bytes, FileUtil.getCriticalFileBytes(file));
+    }
+
+    @Test
+    public void detectCorruptedCodec() throws IOException {
+        byte[] bytes = getCompressibleBytes();
+
+        File file = temporaryFolder.newFile("critical.bin");
+        FileUtil.writeCriticalFile(file, bytes, FileUtil.CriticalFileCodec.DEFLATE);
+
+        byte[] fileBytes = FileUtils.readFileToByteArray(file);
+        fileBytes[4] = 0;
+        FileUtils.writeByteArrayToFile(file, fileBytes);
+
+        try {
+            FileUtil.getCriticalFileBytes(file);
+            fail("Corrupted codec is not detected.");
+        } catch (IOException ignored) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void writeAndReadChunkedCriticalFile() throws IOException {
+        byte[] bytes = getCompressibleBytes();
+
+        for (FileUtil.CriticalFileCodec codec : FileUtil.CriticalFileCodec.values()) {
+            File file = new File(temporaryFolder.getRoot(), "critical-" + codec + ".bin");
+
+            for (int hashChunkSize : new int[]{1, 1000, bytes.length, bytes.length + 1}) {
+                FileUtil.writeCriticalFile(file, bytes, codec, hashChunkSize);
+                assertArrayEquals(bytes, FileUtil.getCriticalFileBytes(file));
+                assertEquals(-1, FileUtil.verifyCriticalFile(file));
+            }
+
+            FileUtil.writeCriticalFile(file, new byte[0], codec, FileUtil.DEFAULT_CRITICAL_FILE_HASH_CHUNK_SIZE);
+            assertArrayEquals(new byte[0], FileUtil.getCriticalFileBytes(file));
+            assertEquals(-1, FileUtil.verifyCriticalFile(file));
+        }
+    }
+
+    @Test
+    public void verifyCriticalFile() throws IOException {
+        byte[] bytes = getCompressibleBytes();
+        File file = temporaryFolder.newFile("critical.bin");
+
+        FileUtil.writeCriticalFile(file, bytes);
+        assertEquals(-1, FileUtil.verifyCriticalFile(file));
+        corruptByte(file, bytes.length / 2);
+        assertEquals(0, FileUtil.verifyCriticalFile(file));
+
+        FileUtil.writeCriticalFile(file, bytes, FileUtil.CriticalFileCodec.DEFLATE);
+        assertEquals(-1, FileUtil.verifyCriticalFile(file));
+        corruptByte(file, 10);
+        assertEquals(0, FileUtil.verifyCriticalFile(file));
+
+        int headerLength = 17;
+        FileUtil.writeCriticalFile(file, bytes, FileUtil.CriticalFileCodec.NONE, 1000);
+        corruptByte(file, headerLength + 5432);
+        assertEquals(5, FileUtil.verifyCriticalFile(file));
+        corruptByte(file, headerLength + 2345);
+        assertEquals(2, FileUtil.verifyCriticalFile(file));
+
+        FileUtil.writeCriticalFile(file, bytes, FileUtil.CriticalFileCodec.NONE, 1000);
+        corruptByte(file, headerLength + bytes.length + 3);
+        assertEquals(0, FileUtil.verifyCriticalFile(file));
+
+        FileUtil.writeCriticalFile(file, bytes, FileUtil.CriticalFileCodec.NONE, 1000);
+        corruptByte(file, (int) file.length() - 1);
+        assertEquals(Integer.MAX_VALUE, FileUtil.verifyCriticalFile(file));
+
+        FileUtil.writeCriticalFile(file, bytes, FileUtil.CriticalFileCodec.NONE, 1000);
+        corruptByte(file, 6);
+        assertEquals(Integer.MAX_VALUE, FileUtil.verifyCriticalFile(file));
+
+        try {
+            FileUtil.getCriticalFileBytes(file);
+            fail("Corrupted chunk size is not detected.");
+        } catch (IOException ignored) {
+            // Expected.
+        }
+    }
+
+    private static void corruptByte(File file, int index) throws IOException {
+        byte[] fileBytes = FileUtils.readFileToByteArray(file);
+        fileBytes[index] ^= 1;
+        FileUtils.writeByteArrayToFile(file, fileBytes);
+    }
+
+    private static byte[] getCompressibleBytes() {
+        Random random = new Random(20201018L);
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 10000; ++i) {
+            text.append("key").append(random.nextInt(100)).append('=').append(random.nextInt(1000)).append('\n');
+        }
+
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,145 @@
+package ru.sladethe.common.math;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+public class DoubleParserTest {
+    @Test
+    public void parseSpecialValues() {
+        String[] values = {
+                "0", "-0", "+0", "0.0", "-0.0e10", "1", "-1", "1.", ".5", "1e0", "1E+2", "1e-2", "1d", "1.5F",
+                "NaN", "-NaN", "Infinity", "-Infinity", "+Infinity", "0x1p3", "-0x1.8p1", "0x.8p0",
+                "1.7976931348623157e308", "1.7976931348623158e308", "1.7976931348623159e308", "1e309", "-1e400",
+                "4.9e-324", "2.4703282292062327e-324", "2.4703282292062328e-324", "2.47e-324", "1e-400",
+                "2.2250738585072011e-308", "2.2250738585072012e-308", "2.2250738585072014e-308",
+                "9007199254740992", "9007199254740993", "9007199254740994", "9007199254740995",
+                "9007199254740993.0000000000000000001", "1.00000000000000011102230246251565404236316680908203125",
+                "1.00000000000000011102230246251565404236316680908203124",
+                "1.00000000000000011102230246251565404236316680908203126",
+                "0.1", "0.2", "0.3", "3.141592653589793", "123456789012345678901234567890", "1e22", "1e23",
+                "8.98846567431158e307", "7.2057594037927933e16", "1" + repeat('0', 400) + "e-400",
+                "0." + repeat('0', 400) + "1e400", repeat('9', 30), "18446744073709551615", "18446744073709551616",
+                "9999999999999999999", "10000000000000000000", "99999999999999999999e-20"
+        };
+
+        for (String value : values) {
+            assertSameDouble(value);
+        }
+    }
+
+    @Test
+    public void parseMalformedValues() {
+        String[] values = {
+                "", "-", "+", ".", "e1", "1e", "1e+", "1.5.5", "1..", "--1", "1-", "1 2", "1ee2", "1fd", "0x", "abc",
+                "Infinityx", "NaN1", "1,5", "١"
+        };
+
+        for (String value : values) {
+            try {
+                DoubleParser.parse(value, 0, value.length());
+                fail("Malformed value '" + value + "' is parsed.");
+            } catch (NumberFormatException e) {
+                try {
+                    Double.parseDouble(value);
+                    fail("Malformed value '" + value + "' is parsed by JDK.");
+                } catch (NumberFormatException jdkException) {
+                    assertEquals("Unexpected exception message.", jdkException.getMessage(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void parseRandomValues() {
+        @SuppressWarnings("UnsecureRandomNumberGeneration") Random random = new Random();
+
+        for (int i = 0; i < 200000; ++i) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            assertSameDouble(Double.toString(value));
+            assertSameDouble(String.format(Locale.US, "%.17g", value));
+        }
+
+        for (int i = 0; i < 200000; ++i) {
+            StringBuilder value = new StringBuilder();
+            int digitCount = 1 + random.nextInt(random.nextBoolean() ? 20 : 40);
+
+            for (int j = 0; j < digitCount; ++j) {
+                value.append((char) ('0' + random.nextInt(10)));
+            }
+
+            if (random.nextBoolean()) {
+                value.insert(random.nextInt(value.length() + 1), '.');
+            }
+
+            if (random.nextBoolean()) {
+                value.append('e').append(random.nextInt(700) - 350);
+            }
+
+            assertSameDouble(value.toString());
+        }
+
+        for (int i = 0; i < 100000; ++i) {
+            // Values halfway between two adjacent doubles.
+            double value = Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE);
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                continue;
+            }
+
+            BigDecimal halfway = new BigDecimal(value).add(
+                    new BigDecimal(Math.nextUp(value))
+            ).divide(BigDecimal.valueOf(2L));
+            assertSameDouble(halfway.toString());
+            assertSameDouble(halfway.round(new MathContext(19)).toString());
+        }
+    }
+
+    @Test
+    public void parseWithNumberUtil() {
+        assertEquals("Can't convert string to double.", 1.5D, NumberUtil.toDouble(" 1.5 "), 0.0D);
+        assertEquals("Can't convert string to double.", null, NumberUtil.toDouble((String) null));
+        assertEquals("Can't convert string to float.", 0.1f, NumberUtil.toFloat("0.1"), 0.0f);
+        assertEquals("Can't parse double.", -2.5D, NumberUtil.toDouble("x=-2.5;", 2, 4), 0.0D);
+
+        byte[] bytes = " 1e-3 ".getBytes(StandardCharsets.US_ASCII);
+        assertEquals("Can't parse double.", 0.001D, NumberUtil.toDouble(bytes, 0, bytes.length), 0.0D);
+
+        try {
+            NumberUtil.toDouble(bytes, 2, bytes.length);
+            fail("Range out of bounds is accepted.");
+        } catch (IndexOutOfBoundsException ignored) {
+            // Expected.
+        }
+    }
+
+    private static void assertSameDouble(String value) {
+        assertEquals(
+                value, Double.doubleToRawLongBits(Double.parseDouble(value)),
+                Double.doubleToRawLongBits(DoubleParser.parse(value, 0, value.length()))
+        );
+
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        assertEquals(
+                value, Double.doubleToRawLongBits(Double.parseDouble(value)),
+                Double.doubleToRawLongBits(NumberUtil.toDouble(bytes, 0, bytes.length))
+        );
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder s = new StringBuilder(count);
+        for (int i = 0; i < count; ++i) {
+            s.append(c);
+        }
+        return s.toString();
+    }
+}
@@ -4,10 +4,13 @@ import gnu.trove.list.*;
 import gnu.trove.list.array.*;
 import org.junit.Assert;
 import org.junit.Test;
+import ru.sladethe.common.text.StringUtil;
 
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.function.Supplier;
 
 import static org.junit.Assert.assertEquals;
 
@@ -25,6 +28,409 @@ public class NumberUtilTest {
         assertEquals("Can't convert string to long.", -101L, (long) NumberUtil.toLong(new BigDecimal("-101.0")));
     }
 
+    @Test
+    public void parseInteger() {
+        assertEquals("Can't parse long.", 123L, NumberUtil.toLong("x=123;", 2, 3, -1L));
+        assertEquals("Can't parse long.", -1L, NumberUtil.toLong(" -1.9 ", 0, 6, 0L));
+        assertEquals("Can't parse long.", 9007199254740993L, NumberUtil.toLong("9007199254740993", 0, 16, 0L));
+        assertEquals("Can't parse long.", Long.MIN_VALUE, NumberUtil.toLong("-9223372036854775808", 0, 20, 0L));
+        assertEquals("Can't parse long.", 0L, NumberUtil.toLong("9223372036854775808", 0, 19, 0L));
+        assertEquals("Can't parse long.", 1500L, NumberUtil.toLong("1.5e3", 0, 5, 0L));
+        assertEquals("Can't parse long.", -1L, NumberUtil.toLong("1.5e", 0, 4, -1L));
+        assertEquals("Can't parse long.", -1L, NumberUtil.toLong("abc", 0, 3, -1L));
+        assertEquals("Can't parse long.", -1L, NumberUtil.toLong(" ", 0, 1, -1L));
+        assertEquals("Can't parse int.", -1, NumberUtil.toInt("2147483648", 0, 10, -1));
+        assertEquals("Can't parse int.", Integer.MAX_VALUE, NumberUtil.toInt("2147483647.9", 0, 12, -1));
+        assertEquals("Can't parse short.", (short) -1, NumberUtil.toShort("32768", 0, 5, (short) -1));
+        assertEquals("Can't parse byte.", (byte) -128, NumberUtil.toByte("-128", 0, 4, (byte) 0));
+        assertEquals("Can't parse byte.", (byte) 0, NumberUtil.toByte("128", 0, 3, (byte) 0));
+
+        assertEquals("Can't convert string to long.", 9007199254740993L, (long) NumberUtil.toLong("9007199254740993"));
+        assertEquals("Can't convert string to long.", Long.MIN_VALUE, (long) NumberUtil.toLong("-9223372036854775808"));
+        assertEquals("Can't convert string to int.", 1000, (int) NumberUtil.toInt(" 1e3 "));
+
+        String[] values = {
+                "0", "-0", "+0", "1.", ".5", "-.5", ".", "-", "+", "", "1..2", "1.2.3", "--1", "1-", "0x10", "0x1p3",
+                "1d", "1.5f", "NaN", "Infinity", "-Infinity", "1e400", "\u00A01\u00A0", "\t7\n", "1 2", "127",
+                "-129", "32767.99", "-32768.5", "2147483647", "-2147483649"
+        };
+
+        for (String value : values) {
+            assertSameInteger(value);
+        }
+
+        @SuppressWarnings("UnsecureRandomNumberGeneration") Random random = new Random();
+        String alphabet = "0123456789.-+ eE";
+
+        for (int i = 0; i < 100000; ++i) {
+            int length = 1 + random.nextInt(12);
+            StringBuilder value = new StringBuilder(length);
+
+            for (int j = 0; j < length; ++j) {
+                value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+
+            assertSameInteger(value.toString());
+        }
+    }
+
+    @Test
+    public void convertStringToIntegerAsBefore() {
+        String[] values = {
+                "0.99999999999999999", "-1.99999999999999999", "2147483647.99999999999", "127.99999999999999999",
+                "-128.99999999999999999", "32767.999999999999999", "9223372036854775807.5", "1e3", " 1.5 ",
+                "\u0001\u00A01", "\u00A0\u00011\u0001\u00A0", "\u00A0 1 \u00A0", "\t-7.9\n", "1.", ".5", "abc", ""
+        };
+
+        for (String value : values) {
+            assertSameIntegerAsBefore(value);
+        }
+
+        @SuppressWarnings("UnsecureRandomNumberGeneration") Random random = new Random();
+
+        for (int i = 0; i < 100000; ++i) {
+            StringBuilder value = new StringBuilder();
+            if (random.nextBoolean()) {
+                value.append('-');
+            }
+
+            value.append(random.nextInt(random.nextBoolean() ? 300 : Integer.MAX_VALUE)).append('.');
+
+            for (int j = random.nextInt(25); j >= 0; --j) {
+                value.append(random.nextBoolean() ? '9' : (char) ('0' + random.nextInt(10)));
+            }
+
+            assertSameIntegerAsBefore(value.toString());
+        }
+    }
+
+    private static void assertSameIntegerAsBefore(String value) {
+        assertEquals(value, convertAsBefore(() -> NumberUtil.toByte(toDoubleAsBefore(value))),
+                convertAsBefore(() -> NumberUtil.toByte(value)));
+        assertEquals(value, convertAsBefore(() -> NumberUtil.toShort(toDoubleAsBefore(value))),
+                convertAsBefore(() -> NumberUtil.toShort(value)));
+        assertEquals(value, convertAsBefore(() -> NumberUtil.toInt(toDoubleAsBefore(value))),
+                convertAsBefore(() -> NumberUtil.toInt(value)));
+        assertEquals(value, convertAsBefore(() -> NumberUtil.toLong(toDoubleAsBefore(value))),
+                convertAsBefore(() -> NumberUtil.toLong(value)));
+    }
+
+    private static double toDoubleAsBefore(String value) {
+        return Double.parseDouble(StringUtil.trim(value));
+    }
+
+    /**
+     * @return the converted value or the class of the thrown exception
+     */
+    private static Object convertAsBefore(Supplier<Number> conversion) {
+        try {
+            return conversion.get();
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    private static void assertSameInteger(String value) {
+        Double doubleValue;
+        try {
+            doubleValue = NumberUtil.toDouble(value);
+        } catch (NumberFormatException ignored) {
+            doubleValue = null;
+        }
+
+        assertEquals(value, toIntegerOrNull(doubleValue, -128L, 127L), toIntegerOrNull(
+                NumberUtil.toByte(value, 0, value.length(), Byte.MIN_VALUE), Byte.MIN_VALUE
+        ));
+        assertEquals(value, toIntegerOrNull(doubleValue, -32768L, 32767L), toIntegerOrNull(
+                NumberUtil.toShort(value, 0, value.length(), Short.MIN_VALUE), Short.MIN_VALUE
+        ));
+        assertEquals(value, toIntegerOrNull(doubleValue, Integer.MIN_VALUE, Integer.MAX_VALUE), toIntegerOrNull(
+                NumberUtil.toInt(value, 0, value.length(), Integer.MIN_VALUE), Integer.MIN_VALUE
+        ));
+    }
+
+    private static Long toIntegerOrNull(Double value, long minValue, long maxValue) {
+        if (value == null || value.isNaN()) {
+            return null;
+        }
+
+        double truncatedValue = value < 0.0D ? Math.ceil(value) : Math.floor(value);
+        return truncatedValue >= minValue && truncatedValue <= maxValue && truncatedValue != minValue
+                ? (long) truncatedValue
+                : null;
+    }
+
+    private static Long toIntegerOrNull(long value, long defaultValue) {
+        return value == defaultValue ? null : value;
+    }
+
+    @Test
+    public void toPrimitiveArray() {
+        Object[] values = {1, 2L, (short) 3, 4.0D, 5.0f, "6", new BigDecimal("7"), (byte) -8, " 9 "};
+        int[] expectedInts = {1, 2, 3, 4, 5, 6, 7, -8, 9};
+
+        Assert.assertArrayEquals("Can't convert values to int array.", expectedInts, NumberUtil.toIntArray(values));
+        Assert.assertArrayEquals(
+                "Can't convert values to long array.",
+                Arrays.stream(expectedInts).asLongStream().toArray(), NumberUtil.toLongArray(Arrays.asList(values))
+        );
+        Assert.assertArrayEquals(
+                "Can't convert values to double array.",
+                Arrays.stream(expectedInts).asDoubleStream().toArray(), NumberUtil.toDoubleArray(values), 0.0D
+        );
+
+        Object[] valuesWithNulls = {null, 1, null, 2L, null};
+        Assert.assertArrayEquals(
+                "Can't replace nulls in int array.",
+                new int[] {-1, 1, -1, 2, -1}, NumberUtil.toIntArray(valuesWithNulls, -1)
+        );
+        Assert.assertArrayEquals(
+                "Can't replace nulls in long array.",
+                new long[] {0L, 1L, 0L, 2L, 0L}, NumberUtil.toLongArray(Arrays.asList(valuesWithNulls), 0L)
+        );
+        Assert.assertArrayEquals(
+                "Can't replace nulls in double array.",
+                new double[] {0.5D, 1.0D, 0.5D, 2.0D, 0.5D}, NumberUtil.toDoubleArray(valuesWithNulls, 0.5D), 0.0D
+        );
+        Assert.assertArrayEquals("Can't convert empty array.", new int[0], NumberUtil.toIntArray(new Object[0]));
+
+        assertConversionFails(() -> NumberUtil.toIntArray(valuesWithNulls));
+        assertConversionFails(() -> NumberUtil.toIntArray(new Object[] {1, Long.MAX_VALUE}));
+        assertConversionFails(() -> NumberUtil.toLongArray(new Object[] {1L, "abc"}, 0L));
+        assertConversionFails(() -> NumberUtil.parallelToDoubleArray(new Object[] {1.0D, null}));
+    }
+
+    @Test
+    public void parallelToPrimitiveArray() {
+        @SuppressWarnings("UnsecureRandomNumberGeneration") Random random = new Random();
+
+        for (int count : new int[] {0, 1, 100, 1 << 14, 100_000 + random.nextInt(1000)}) {
+            Object[] values = new Object[count];
+
+            for (int i = 0; i < count; ++i) {
+                int value = random.nextInt(1_000_000) - 500_000;
+
+                switch (random.nextInt(i < count / 2 ? 10 : 4)) {
+                    case 0:
+                        values[i] = null;
+                        break;
+                    case 1:
+                        values[i] = (long) value;
+                        break;
+                    case 2:
+                        values[i] = (double) value;
+                        break;
+                    case 3:
+                        values[i] = Integer.toString(value);
+                        break;
+                    default:
+                        values[i] = value;
+                        break;
+                }
+            }
+
+            int[] expectedInts = new int[count];
+            long[] expectedLongs = new long[count];
+            double[] expectedDoubles = new double[count];
+
+            for (int i = 0; i < count; ++i) {
+                Object value = values[i];
+                expectedInts[i] = value == null ? 7 : NumberUtil.toInt(value);
+                expectedLongs[i] = value == null ? 7L : NumberUtil.toLong(value);
+                expectedDoubles[i] = value == null ? 7.0D : NumberUtil.toDouble(value);
+            }
+
+            Assert.assertArrayEquals(
+                    "Can't convert values to int array.", expectedInts, NumberUtil.parallelToIntArray(values, 7)
+            );
+            Assert.assertArrayEquals(
+                    "Can't convert values to long array.", expectedLongs, NumberUtil.parallelToLongArray(values, 7L)
+            );
+            Assert.assertArrayEquals(
+                    "Can't convert values to double array.",
+                    expectedDoubles, NumberUtil.parallelToDoubleArray(values, 7.0D), 0.0D
+            );
+            Assert.assertArrayEquals(
+                    "Can't convert values to int array.", expectedInts, NumberUtil.toIntArray(values, 7)
+            );
+        }
+    }
+
+    @Test
+    public void arrayNearlyEqualsAndRoundEquals() {
+        @SuppressWarnings("UnsecureRandomNumberGeneration") Random random = new Random();
+        double[] specialValues = {
+                0.0D, -0.0D, 1.0D, -1.0D, 1.0E-9D, Double.MAX_VALUE, -Double.MAX_VALUE, Double.MIN_VALUE,
+                Double.NaN, Double.longBitsToDouble(0x7FF8000000000001L), Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY
+        };
+        double[] parameters = {
+                0.0D, 1.0E-6D, 0.5D, 10.0D, -1.0D, Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NaN
+        };
+
+        for (int count : new int[] {0, 1, 255, 256, 257, 1000, 10_000}) {
+            double[] a = new double[count];
+            double[] b = new double[count];
+
+            for (int i = 0; i < count; ++i) {
+                a[i] = random.nextInt(4) == 0
+                        ? specialValues[random.nextInt(specialValues.length)]
+                        : random.nextDouble() * 100.0D;
+
+                switch (random.nextInt(count < 1000 ? 6 : 1000)) {
+                    case 0:
+                        b[i] = specialValues[random.nextInt(specialValues.length)];
+                        break;
+                    case 1:
+                        b[i] = a[i] + random.nextDouble() * 1.0E-6D;
+                        break;
+                    case 2:
+                        b[i] = a[i] + random.nextGaussian();
+                        break;
+                    default:
+                        b[i] = a[i];
+                        break;
+                }
+            }
+
+            float[] floatA = new float[count];
+            float[] floatB = new float[count];
+
+            for (int i = 0; i < count; ++i) {
+                floatA[i] = (float) a[i];
+                floatB[i] = (float) b[i];
+            }
+
+            for (double parameter : parameters) {
+                assertArrayEqualsKernels(a, b, floatA, floatB, parameter);
+
+                if (count > 10) {
+                    int offset = random.nextInt(count / 2);
+                    int length = random.nextInt(count - offset);
+                    assertRangeEqualsKernels(a, b, offset, length, parameter);
+                }
+            }
+        }
+
+        try {
+            NumberUtil.nearlyEqualsMismatch(new double[1], new double[2], 0.0D);
+            Assert.fail("Arrays of different lengths are compared.");
+        } catch (IllegalArgumentException ignored) {
+            // Expected.
+        }
+
+        try {
+            NumberUtil.countRoundEqualsMismatches(new float[10], 5, new float[10], 0, 6, 1.0f);
+            Assert.fail("Range out of bounds is compared.");
+        } catch (IndexOutOfBoundsException ignored) {
+            // Expected.
+        }
+    }
+
+    private static void assertArrayEqualsKernels(
+            double[] a, double[] b, float[] floatA, float[] floatB, double parameter) {
+        int count = a.length;
+        float floatParameter = (float) parameter;
+
+        int nearlyMismatch = -1;
+        int nearlyMismatchCount = 0;
+        int roundMismatch = -1;
+        int roundMismatchCount = 0;
+        int floatNearlyMismatch = -1;
+        int floatNearlyMismatchCount = 0;
+        int floatRoundMismatch = -1;
+        int floatRoundMismatchCount = 0;
+
+        for (int i = count - 1; i >= 0; --i) {
+            if (!NumberUtil.nearlyEquals(a[i], b[i], parameter)) {
+                nearlyMismatch = i;
+                ++nearlyMismatchCount;
+            }
+
+            if (!NumberUtil.roundEquals(a[i], b[i], parameter)) {
+                roundMismatch = i;
+                ++roundMismatchCount;
+            }
+
+            if (!NumberUtil.nearlyEquals(floatA[i], floatB[i], floatParameter)) {
+                floatNearlyMismatch = i;
+                ++floatNearlyMismatchCount;
+            }
+
+            if (!NumberUtil.roundEquals(floatA[i], floatB[i], floatParameter)) {
+                floatRoundMismatch = i;
+                ++floatRoundMismatchCount;
+            }
+        }
+
+        assertEquals("Wrong nearly equals mismatch.", nearlyMismatch, NumberUtil.nearlyEqualsMismatch(a, b, parameter));
+        assertEquals(
+                "Wrong nearly equals mismatch count.",
+                nearlyMismatchCount, NumberUtil.countNearlyEqualsMismatches(a, b, parameter)
+        );
+        assertEquals("Wrong round equals mismatch.", roundMismatch, NumberUtil.roundEqualsMismatch(a, b, parameter));
+        assertEquals(
+                "Wrong round equals mismatch count.",
+                roundMismatchCount, NumberUtil.countRoundEqualsMismatches(a, b, parameter)
+        );
+        assertEquals(
+                "Wrong float nearly equals mismatch.",
+                floatNearlyMismatch, NumberUtil.nearlyEqualsMismatch(floatA, floatB, floatParameter)
+        );
+        assertEquals(
+                "Wrong float nearly equals mismatch count.",
+                floatNearlyMismatchCount, NumberUtil.countNearlyEqualsMismatches(floatA, floatB, floatParameter)
+        );
+        assertEquals(
+                "Wrong float round equals mismatch.",
+                floatRoundMismatch, NumberUtil.roundEqualsMismatch(floatA, floatB, floatParameter)
+        );
+        assertEquals(
+                "Wrong float round equals mismatch count.",
+                floatRoundMismatchCount, NumberUtil.countRoundEqualsMismatches(floatA, floatB, floatParameter)
+        );
+    }
+
+    private static void assertRangeEqualsKernels(double[] a, double[] b, int offset, int length, double parameter) {
+        int bOffset = offset / 2;
+        double[] shiftedB = new double[b.length];
+        System.arraycopy(b, offset, shiftedB, bOffset, length);
+
+        double[] rangeA = Arrays.copyOfRange(a, offset, offset + length);
+        double[] rangeB = Arrays.copyOfRange(b, offset, offset + length);
+
+        assertEquals(
+                "Wrong nearly equals range mismatch.",
+                NumberUtil.nearlyEqualsMismatch(rangeA, rangeB, parameter),
+                NumberUtil.nearlyEqualsMismatch(a, offset, shiftedB, bOffset, length, parameter)
+        );
+        assertEquals(
+                "Wrong nearly equals range mismatch count.",
+                NumberUtil.countNearlyEqualsMismatches(rangeA, rangeB, parameter),
+                NumberUtil.countNearlyEqualsMismatches(a, offset, shiftedB, bOffset, length, parameter)
+        );
+        assertEquals(
+                "Wrong round equals range mismatch.",
+                NumberUtil.roundEqualsMismatch(rangeA, rangeB, parameter),
+                NumberUtil.roundEqualsMismatch(a, offset, shiftedB, bOffset, length, parameter)
+        );
+        assertEquals(
+                "Wrong round equals range mismatch count.",
+                NumberUtil.countRoundEqualsMismatches(rangeA, rangeB, parameter),
+                NumberUtil.countRoundEqualsMismatches(a, offset, shiftedB, bOffset, length, parameter)
+        );
+    }
+
+    private static void assertConversionFails(Runnable conversion) {
+        try {
+            conversion.run();
+        } catch (IllegalArgumentException ignored) {
+            return;
+        }
+
+        Assert.fail("Illegal value is converted.");
+    }
+
     @Test
     public void packIntsToLong() {
         @SuppressWarnings("UnsecureRandomNumberGeneration") Random random = new Random();
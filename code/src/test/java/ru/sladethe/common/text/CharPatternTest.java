@@ -0,0 +1,77 @@
+package ru.sladethe.common.text;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("MessageMissingOnJUnitAssertion")
+public class CharPatternTest {
+    private static final Object[][] PATTERN_PAIRS = {
+            {Patterns.PLUS_PATTERN, CharPatterns.PLUS_PATTERN},
+            {Patterns.MINUS_PATTERN, CharPatterns.MINUS_PATTERN},
+            {Patterns.EQ_PATTERN, CharPatterns.EQ_PATTERN},
+            {Patterns.LT_PATTERN, CharPatterns.LT_PATTERN},
+            {Patterns.GT_PATTERN, CharPatterns.GT_PATTERN},
+            {Patterns.SPACE_PATTERN, CharPatterns.SPACE_PATTERN},
+            {Patterns.NBSP_PATTERN, CharPatterns.NBSP_PATTERN},
+            {Patterns.WHITESPACE_PATTERN, CharPatterns.WHITESPACE_PATTERN},
+            {Patterns.THIN_SPACE_PATTERN, CharPatterns.THIN_SPACE_PATTERN},
+            {Patterns.ZERO_WIDTH_SPACE_PATTERN, CharPatterns.ZERO_WIDTH_SPACE_PATTERN},
+            {Patterns.TAB_PATTERN, CharPatterns.TAB_PATTERN},
+            {Patterns.CR_PATTERN, CharPatterns.CR_PATTERN},
+            {Patterns.LF_PATTERN, CharPatterns.LF_PATTERN},
+            {Patterns.SLASH_PATTERN, CharPatterns.SLASH_PATTERN},
+            {Patterns.DOT_PATTERN, CharPatterns.DOT_PATTERN},
+            {Patterns.COMMA_PATTERN, CharPatterns.COMMA_PATTERN},
+            {Patterns.SEMICOLON_PATTERN, CharPatterns.SEMICOLON_PATTERN},
+            {Patterns.COLON_PATTERN, CharPatterns.COLON_PATTERN},
+            {Patterns.AMP_PATTERN, CharPatterns.AMP_PATTERN},
+            {Pattern.compile("[a.$]+"), CharPattern.anyOf("$.a").oneOrMore()}
+    };
+
+    private static final String ALPHABET = "ab+-=<> \u00A0\t\n\u000B\f\r\u2009\u200B/.,;:&$";
+
+    @Test
+    public void sameAsPattern() {
+        Random random = new Random(20201018L);
+
+        for (int i = 0; i < 500; ++i) {
+            StringBuilder s = new StringBuilder();
+            for (int j = random.nextInt(20); j > 0; --j) {
+                s.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+
+            for (Object[] patternPair : PATTERN_PAIRS) {
+                Pattern pattern = (Pattern) patternPair[0];
+                CharPattern charPattern = (CharPattern) patternPair[1];
+
+                for (int limit = -1; limit <= 4; ++limit) {
+                    assertArrayEquals(pattern.split(s, limit), charPattern.split(s, limit));
+                }
+                assertArrayEquals(pattern.split(s), charPattern.split(s));
+
+                assertEquals(pattern.matcher(s).replaceAll(Matcher.quoteReplacement("$1\\")), charPattern.replaceAll(
+                        s, "$1\\"
+                ));
+
+                Matcher matcher = pattern.matcher(s);
+                int count = 0;
+                while (matcher.find()) {
+                    ++count;
+                }
+                assertEquals(count, charPattern.count(s));
+
+                for (int from = 0; from <= s.length(); ++from) {
+                    assertEquals(matcher.find(from) ? matcher.start() : -1, charPattern.indexOf(s, from));
+                }
+            }
+        }
+    }
+}
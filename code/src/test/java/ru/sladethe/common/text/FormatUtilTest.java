@@ -0,0 +1,174 @@
+package ru.sladethe.common.text;
+
+import org.junit.Test;
+import ru.sladethe.common.math.NumberUtil;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+import static ru.sladethe.common.io.FileUtil.*;
+
+/**
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("MessageMissingOnJUnitAssertion")
+public class FormatUtilTest {
+    @Test
+    public void formatDataSize() throws IOException {
+        assertEquals("0 B", FormatUtil.formatDataSize(0L));
+        assertEquals("1023 B", FormatUtil.formatDataSize(1023L));
+        assertEquals("1 kB", FormatUtil.formatDataSize(1024L));
+        assertEquals("1.5 kB", FormatUtil.formatDataSize(1536L));
+        assertEquals("1.3 kB", FormatUtil.formatDataSize(1280L));
+        assertEquals("1024.0 kB", FormatUtil.formatDataSize(BYTES_PER_MB - 1L));
+        assertEquals("8191 PB", FormatUtil.formatDataSize(Long.MAX_VALUE / BYTES_PER_PB * BYTES_PER_PB));
+        assertEquals("8192.0 PB", FormatUtil.formatDataSize(Long.MAX_VALUE));
+
+        StringBuilder builder = new StringBuilder("size: ");
+        FormatUtil.formatDataSize(3L * BYTES_PER_GB + 1L, builder);
+        assertEquals("size: 3.0 GB", builder.toString());
+
+        StringWriter writer = new StringWriter();
+        FormatUtil.formatDataSize(1100L, writer);
+        assertEquals("1.1 kB", writer.toString());
+
+        Random random = new Random(20201018L);
+
+        for (int i = 0; i < 100000; ++i) {
+            long size = random.nextLong() >>> 1 + random.nextInt(63);
+            assertEquals(getLegacyFormattedDataSize(size), FormatUtil.formatDataSize(size));
+        }
+
+        for (long unit : new long[] {BYTES_PER_KB, BYTES_PER_MB, BYTES_PER_GB, BYTES_PER_TB, BYTES_PER_PB}) {
+            for (long fraction = 0L; fraction < 40L; ++fraction) {
+                long size = unit + unit * fraction / 40L;
+                for (long delta = -2L; delta <= 2L; ++delta) {
+                    assertEquals(getLegacyFormattedDataSize(size + delta), FormatUtil.formatDataSize(size + delta));
+                }
+            }
+        }
+
+        try {
+            FormatUtil.formatDataSize(-1L);
+            fail("Negative size is not rejected.");
+        } catch (IllegalArgumentException ignored) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void parseDataSize() {
+        assertEquals(0L, FormatUtil.parseDataSize(null));
+        assertEquals(0L, FormatUtil.parseDataSize(" \t"));
+        assertEquals(512L, FormatUtil.parseDataSize("512"));
+        assertEquals(1536L, FormatUtil.parseDataSize("1.5 kB"));
+        assertEquals(10L * BYTES_PER_GB, FormatUtil.parseDataSize(" 10g "));
+        assertEquals(102L, FormatUtil.parseDataSize("0.1K"));
+        assertEquals(1L, FormatUtil.parseDataSize("1.99999"));
+        assertEquals(999999L * BYTES_PER_TB, FormatUtil.parseDataSize("999999TB"));
+        assertEquals(Long.MAX_VALUE, FormatUtil.parseDataSize("8192P"));
+        assertEquals(3L * BYTES_PER_MB, FormatUtil.parseDataSize("size=3MB;", 5, 3));
+
+        String[] sizes = {
+                "0", "00", "01", "1234567", "123456", "1.", ".5", "1.123456", "1.12345", "1 ", "1  K", "1 K B", "1KB",
+                "1kb", "1 b", "1B", "B", "K", "1BB", "1KK", "1X", "-1", "+1", "1e3", "8191.99999P", "8193P", "999999P",
+                "999999.99999P", "0.00001", "0.5 K", "٣", "1 \u00A0K"
+        };
+
+        for (String size : sizes) {
+            assertSameDataSize(size);
+        }
+
+        Random random = new Random(20201018L);
+        String alphabet = "0123456789. KkMGTPpBb";
+
+        for (int i = 0; i < 100000; ++i) {
+            int length = 1 + random.nextInt(12);
+            StringBuilder size = new StringBuilder(length);
+
+            for (int j = 0; j < length; ++j) {
+                size.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+
+            assertSameDataSize(size.toString());
+        }
+
+        for (int i = 0; i < 100000; ++i) {
+            String size = random.nextInt(1000000) + (random.nextBoolean() ? "" : "." + random.nextInt(100000))
+                    + (random.nextBoolean() ? " " : "") + "KMGTP".charAt(random.nextInt(5));
+            assertSameDataSize(size);
+        }
+    }
+
+    private static void assertSameDataSize(String size) {
+        long expected;
+        try {
+            expected = getLegacyParsedDataSize(size);
+        } catch (IllegalArgumentException e) {
+            try {
+                FormatUtil.parseDataSize(size);
+                fail("Expected exception for '" + size + "'.");
+            } catch (IllegalArgumentException actualException) {
+                assertEquals(e.getMessage(), actualException.getMessage());
+            }
+            return;
+        }
+
+        assertEquals(size, expected, FormatUtil.parseDataSize(size));
+    }
+
+    private static long getLegacyParsedDataSize(String size) {
+        Pattern pattern = Pattern.compile("(0|[1-9][01-9]{0,5})(\\.[01-9]{1,5})? ?[KMGTP]?B?");
+
+        size = StringUtil.trimToNull(size);
+        if (size == null) {
+            return 0L;
+        }
+
+        size = size.toUpperCase();
+
+        if (!pattern.matcher(size).matches()) {
+            throw new IllegalArgumentException(String.format(
+                    "'%s' does not match the pattern '%s'.", size, pattern
+            ));
+        }
+
+        int lastCharIndex = size.length() - 1;
+        char lastChar = size.charAt(lastCharIndex);
+
+        if (lastChar == 'B') {
+            size = size.substring(0, lastCharIndex);
+
+            lastCharIndex = size.length() - 1;
+            lastChar = size.charAt(lastCharIndex);
+        }
+
+        int unitIndex = "KMGTP".indexOf(lastChar);
+        if (unitIndex == -1) {
+            return NumberUtil.toLong(Double.parseDouble(size.trim()));
+        }
+
+        double value = Double.parseDouble(size.substring(0, lastCharIndex).trim());
+        return NumberUtil.toLong(value * (BYTES_PER_KB << (unitIndex * 10)));
+    }
+
+    private static String getLegacyFormattedDataSize(long size) {
+        long[] units = {BYTES_PER_PB, BYTES_PER_TB, BYTES_PER_GB, BYTES_PER_MB, BYTES_PER_KB};
+        String[] unitNames = {"PB", "TB", "GB", "MB", "kB"};
+
+        for (int unitIndex = 0; unitIndex < units.length; ++unitIndex) {
+            long unit = units[unitIndex];
+            if (size >= unit) {
+                return size % unit == 0
+                        ? size / unit + " " + unitNames[unitIndex]
+                        : String.format(Locale.US, "%.1f %s", (double) size / (double) unit, unitNames[unitIndex]);
+            }
+        }
+
+        return size + " B";
+    }
+}
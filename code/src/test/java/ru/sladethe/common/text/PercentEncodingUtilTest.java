@@ -0,0 +1,96 @@
+package ru.sladethe.common.text;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("MessageMissingOnJUnitAssertion")
+public class PercentEncodingUtilTest {
+    @Test
+    public void encode() throws UnsupportedEncodingException {
+        String s = "safe-chars_.*09azAZ";
+        assertSame(s, PercentEncodingUtil.encode(s));
+
+        assertEquals("a+b%26c%3Dd", PercentEncodingUtil.encode("a b&c=d"));
+        assertEquals("%D0%BF%D1%80%D0%B8%E2%82%AC", PercentEncodingUtil.encode("при€"));
+        assertEquals("%F0%9F%98%80%3F%3Fx", PercentEncodingUtil.encode("😀\uDE00\uD83Dx"));
+
+        StringBuilder out = new StringBuilder("prefix=");
+        PercentEncodingUtil.encode("a b", out);
+        assertEquals("prefix=a+b", out.toString());
+
+        Random random = new Random(20201018L);
+
+        for (int i = 0; i < 10000; ++i) {
+            String randomString = getRandomString(random);
+            assertEquals(URLEncoder.encode(randomString, "UTF-8"), PercentEncodingUtil.encode(randomString));
+        }
+    }
+
+    @Test
+    public void decode() throws UnsupportedEncodingException {
+        String s = "nothing to decode";
+        assertSame(s, PercentEncodingUtil.decode(s));
+
+        assertEquals("a b&c=d", PercentEncodingUtil.decode("a+b%26c%3dd"));
+        assertEquals("при€", PercentEncodingUtil.decode("%D0%BF%D1%80%D0%B8%E2%82%AC"));
+
+        StringBuilder out = new StringBuilder("prefix=");
+        PercentEncodingUtil.decode("a+b", out);
+        assertEquals("prefix=a b", out.toString());
+
+        String[] strings = {
+                "%", "%4", "a%4", "%41%", "%41%4", "%zz", "%-1", "%+1", "%١٢", "%FF%FE", "%C3", "%C3%A9%",
+                "%41%42%4", "%E2%82", "%%41"
+        };
+
+        for (String string : strings) {
+            assertSameDecoding(string);
+        }
+
+        Random random = new Random(20201018L);
+
+        for (int i = 0; i < 10000; ++i) {
+            String randomString = getRandomString(random);
+            assertSameDecoding(randomString);
+            assertSameDecoding(URLEncoder.encode(randomString, "UTF-8"));
+        }
+    }
+
+    private static void assertSameDecoding(String s) throws UnsupportedEncodingException {
+        String expected;
+        try {
+            expected = URLDecoder.decode(s, "UTF-8");
+        } catch (IllegalArgumentException e) {
+            try {
+                PercentEncodingUtil.decode(s);
+                fail("Expected exception for '" + s + "'.");
+            } catch (IllegalArgumentException ignored) {
+                // Expected.
+            }
+            return;
+        }
+
+        assertEquals(expected, PercentEncodingUtil.decode(s));
+    }
+
+    private static String getRandomString(Random random) {
+        String alphabet = "aZ9 -_.*+%&=?/#éф€😀F";
+        int length = random.nextInt(16);
+        StringBuilder s = new StringBuilder(length);
+
+        for (int i = 0; i < length; ++i) {
+            s.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+
+        return s.toString();
+    }
+}
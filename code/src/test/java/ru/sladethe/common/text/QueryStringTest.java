@@ -0,0 +1,77 @@
+package ru.sladethe.common.text;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("MessageMissingOnJUnitAssertion")
+public class QueryStringTest {
+    @Test
+    public void parse() {
+        QueryString queryString = new QueryString("id=17&name=a%20b+c&flag&=x&e=&a=b=c");
+        assertEquals(6, queryString.size());
+
+        assertEquals("id", queryString.getRawName(0));
+        assertEquals("17", queryString.getRawValue(0));
+        assertEquals("a%20b+c", queryString.getRawValue(1));
+        assertEquals("a b c", queryString.getValue(1));
+        assertEquals("a b c", queryString.getValue("name"));
+        assertEquals("flag", queryString.getName(2));
+        assertNull(queryString.getValue(2));
+        assertEquals("", queryString.getRawName(3));
+        assertEquals("x", queryString.getValue(3));
+        assertEquals("", queryString.getValue(4));
+        assertEquals("b=c", queryString.getValue("a"));
+        assertNull(queryString.getValue("absent"));
+
+        assertEquals(1, new QueryString("").size());
+        assertEquals(3, new QueryString("&a&").size());
+        assertEquals("a&b", new QueryString("a&b").toString());
+    }
+
+    @Test
+    public void modify() {
+        QueryString queryString = new QueryString("id=17&pageIndex=0&pageIndex1&counter=0&pageIndex&flag=1");
+
+        assertEquals(2, queryString.remove("pageIndex"));
+        assertEquals(0, queryString.remove("page"));
+        assertEquals("id=17&pageIndex1&counter=0&flag=1", queryString.toString());
+
+        queryString.replace("counter", "5");
+        queryString.replace("compact", null);
+        assertEquals("id=17&pageIndex1&counter=5&flag=1&compact", queryString.toString());
+        assertEquals("5", queryString.getValue("counter"));
+
+        queryString.add(0, "first", "a%26b");
+        queryString.add("id", "18");
+        assertEquals("a&b", queryString.getValue(0));
+        assertEquals("first=a%26b&id=17&pageIndex1&counter=5&flag=1&compact&id=18", queryString.toString());
+
+        queryString.replace("id", "");
+        assertEquals("first=a%26b&id&pageIndex1&counter=5&flag=1&compact", queryString.toString());
+
+        queryString.remove(0);
+        assertEquals("id", queryString.getName(0));
+        assertEquals("id&pageIndex1&counter=5&flag=1&compact", queryString.toString());
+
+        for (int i = 0; i < 100; ++i) {
+            queryString.add("p" + i, Integer.toString(i));
+        }
+
+        assertEquals(105, queryString.size());
+        assertEquals("99", queryString.getValue("p99"));
+        assertEquals("5", queryString.getValue("counter"));
+    }
+
+    @Test
+    public void writeEmptyParameters() {
+        QueryString queryString = new QueryString("&&a=1&&b=2&");
+        assertEquals("a=1&&b=2&", queryString.toString());
+
+        queryString.remove("b");
+        assertEquals("a=1&&", queryString.toString());
+    }
+}
@@ -1,8 +1,16 @@
 package ru.sladethe.common.text;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.text.translate.*;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Supplier;
+
 import static org.junit.Assert.*;
 
 /**
@@ -10,10 +18,42 @@ import static org.junit.Assert.*;
  */
 @SuppressWarnings("MessageMissingOnJUnitAssertion")
 public class StringUtilTest {
+    private static final CharSequenceTranslator ESCAPE_JAVA_RETAIN_CYRILLIC_REFERENCE = new LookupTranslator(
+            ((Supplier<Map<CharSequence, CharSequence>>) () -> {
+                Map<CharSequence, CharSequence> lookupMap = new HashMap<>();
+                lookupMap.put("\"", "\\\"");
+                lookupMap.put("\\", "\\\\");
+                return Collections.unmodifiableMap(lookupMap);
+            }).get()
+    ).with(
+            new LookupTranslator(EntityArrays.JAVA_CTRL_CHARS_ESCAPE)
+    ).with(
+            JavaUnicodeEscaper.below(32)
+    ).with(
+            JavaUnicodeEscaper.between(128, (int) 'Ё' - 1)
+    ).with(
+            JavaUnicodeEscaper.between((int) 'Ё' + 1, (int) 'А' - 1)
+    ).with(
+            JavaUnicodeEscaper.between((int) 'я' + 1, (int) 'ё' - 1)
+    ).with(
+            JavaUnicodeEscaper.above((int) 'ё')
+    );
+
     private static final String BLANK_STRING = String.format(
             " \r\n\t%c%c%c", StringUtil.ZERO_WIDTH_SPACE, StringUtil.THIN_SPACE, StringUtil.NON_BREAKING_SPACE
     );
 
+    @Test
+    public void isWhitespace() {
+        for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; ++c) {
+            assertEquals(
+                    "Illegal result for char " + c + '.',
+                    Character.isWhitespace(c) || c == StringUtil.NON_BREAKING_SPACE || c == StringUtil.ZERO_WIDTH_SPACE,
+                    StringUtil.isWhitespace((char) c)
+            );
+        }
+    }
+
     @SuppressWarnings("ConstantConditions")
     @Test
     public void isEmpty() {
@@ -155,6 +195,167 @@ public class StringUtilTest {
         assertArrayEquals(sortedStrings, strings);
     }
 
+    @Test
+    public void compareStringsSmart() {
+        Random random = new Random(20201018L);
+        String alphabet = "ab0123456789\u0661\u0662.";
+        String[] strings = new String[2000];
+
+        for (int i = 0; i < strings.length; ++i) {
+            StringBuilder string = new StringBuilder();
+
+            for (int j = random.nextInt(30); j > 0; --j) {
+                if (random.nextInt(20) == 0) {
+                    string.append(StringUtils.repeat(random.nextBoolean() ? '9' : '0', 15 + random.nextInt(10)));
+                }
+                string.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+
+            strings[i] = string.toString();
+        }
+
+        for (int i = 0; i < strings.length; ++i) {
+            for (int j = 0; j < 50; ++j) {
+                String stringA = strings[i];
+                String stringB = j == 0 ? stringA : strings[random.nextInt(strings.length)];
+                int expectedResult = compareStringsSmartReference(stringA, stringB);
+
+                assertEquals(expectedResult, StringUtil.compareStringsSmart(stringA, stringB));
+                assertEquals(expectedResult, new SmartSortKey(stringA).compareTo(new SmartSortKey(stringB)));
+            }
+        }
+
+        String[] expectedStrings = strings.clone();
+        Arrays.sort(expectedStrings, StringUtilTest::compareStringsSmartReference);
+        StringUtil.sortStringsSmart(strings);
+        assertArrayEquals(expectedStrings, strings);
+    }
+
+    @Test
+    public void parallelSortStringsSmart() {
+        Random random = new Random(20201018L);
+        String[] strings = new String[50000];
+
+        for (int i = 0; i < strings.length; ++i) {
+            strings[i] = "artifact-" + random.nextInt(100) + '.' + random.nextInt(1000) + (random.nextBoolean()
+                    ? "-SNAPSHOT" : "-" + StringUtils.leftPad(Integer.toString(random.nextInt(100)), 3, '0'));
+        }
+
+        String[] expectedStrings = strings.clone();
+        Arrays.sort(expectedStrings, StringUtil::compareStringsSmart);
+
+        List<String> stringList = new ArrayList<>(Arrays.asList(strings));
+        StringUtil.parallelSortStringsSmart(strings);
+        StringUtil.parallelSortStringsSmart(stringList);
+
+        assertArrayEquals(expectedStrings, strings);
+        assertEquals(Arrays.asList(expectedStrings), stringList);
+
+        String[] smallStrings = {"a10", "a2", "a1"};
+        StringUtil.parallelSortStringsSmart(smallStrings);
+        assertArrayEquals(new String[] {"a1", "a2", "a10"}, smallStrings);
+    }
+
+    @Test
+    public void escapeJavaRetainCyrillic() throws IOException {
+        assertNull(StringUtil.escapeJavaRetainCyrillic(null));
+
+        String plainString = "Plain ASCII text и кириллица, Ёё.";
+        assertSame(plainString, StringUtil.escapeJavaRetainCyrillic(plainString));
+
+        StringBuilder allChars = new StringBuilder(Character.MAX_VALUE + 1);
+        for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; ++c) {
+            allChars.append((char) c);
+        }
+
+        String[] strings = {
+                "", "\"quoted\" \\ back\bslash\n\t\f\r\u0000\u001F\u007F", "Ѐ Ё Ђ Џ А я ѐ ё ђ €",
+                "\uD83D\uDE00 \uD83D x \uDE00", allChars.toString()
+        };
+
+        for (String s : strings) {
+            String expected = ESCAPE_JAVA_RETAIN_CYRILLIC_REFERENCE.translate(s);
+            assertEquals(expected, StringUtil.escapeJavaRetainCyrillic(s));
+
+            StringBuilder result = new StringBuilder();
+            StringUtil.escapeJavaRetainCyrillic(s, result);
+            assertEquals(expected, result.toString());
+        }
+    }
+
+    @Test
+    public void removeBoms() {
+        assertNull(StringUtil.removeBoms(null));
+        assertArrayEquals(new byte[0], StringUtil.removeBoms(new byte[0]));
+        assertArrayEquals(new byte[] {'a'}, StringUtil.removeBoms(new byte[] {'a'}));
+
+        assertArrayEquals(new byte[] {'a'}, StringUtil.removeBoms(bytes(0xEF, 0xBB, 0xBF, 'a')));
+        assertArrayEquals(new byte[] {0, 'a'}, StringUtil.removeBoms(bytes(0xFE, 0xFF, 0, 'a')));
+        assertArrayEquals(new byte[] {'a', 0}, StringUtil.removeBoms(bytes(0xFF, 0xFE, 'a', 0)));
+        assertArrayEquals(bytes(0, 0, 0, 'a'), StringUtil.removeBoms(bytes(0, 0, 0xFE, 0xFF, 0, 0, 0, 'a')));
+        assertArrayEquals(bytes('a', 0, 0, 0), StringUtil.removeBoms(bytes(0xFF, 0xFE, 0, 0, 'a', 0, 0, 0)));
+        assertArrayEquals(new byte[0], StringUtil.removeBoms(bytes(0xEF, 0xBB, 0xBF)));
+        assertArrayEquals(bytes(0xEF, 0xBB), StringUtil.removeBoms(bytes(0xEF, 0xBB)));
+    }
+
+    @Test
+    public void getBomLength() {
+        byte[] bytes = bytes('x', 0xFF, 0xFE, 0, 0, 'a', 0, 0, 0);
+
+        assertEquals(0, StringUtil.getBomLength(null));
+        assertEquals(0, StringUtil.getBomLength(bytes));
+        assertEquals(4, StringUtil.getBomLength(bytes, 1, 8));
+        assertEquals(2, StringUtil.getBomLength(bytes, 1, 3));
+        assertEquals(0, StringUtil.getBomLength(bytes, 1, 1));
+
+        assertEquals(Charset.forName("UTF-32LE"), StringUtil.getBomCharset(bytes, 1, 8));
+        assertEquals(StandardCharsets.UTF_16LE, StringUtil.getBomCharset(bytes, 1, 2));
+        assertNull(StringUtil.getBomCharset(bytes, 0, bytes.length));
+
+        assertEquals("a", new String(bytes, 5, 4, Charset.forName("UTF-32LE")));
+    }
+
+    @Test
+    public void cropLines() throws IOException {
+        assertNull(StringUtil.cropLines((String) null, 10, 10));
+        assertEquals("", StringUtil.cropLines("", 10, 10));
+        assertEquals("", StringUtil.cropLines(new StringBuilder(), 10, 10));
+        assertEquals("a\r\n\r\nbc...\r\n...\r\n", StringUtil.cropLines("a\r\rbcd\r\ne\n\n", 2, 3));
+
+        Random random = new Random(20201018L);
+
+        for (int i = 0; i < 2000; ++i) {
+            String input = getRandomLines(random);
+            int maxLineLength = random.nextInt(12);
+            int maxLineNumber = random.nextInt(12);
+
+            String expected = cropLinesReference(input, maxLineLength, maxLineNumber);
+            assertEquals(expected, StringUtil.cropLines(input, maxLineLength, maxLineNumber));
+            assertEquals(expected, StringUtil.cropLines(new StringReader(input), maxLineLength, maxLineNumber));
+        }
+    }
+
+    @Test
+    public void shrinkLinesToFromReader() throws IOException {
+        assertEquals(Collections.singletonList(""), StringUtil.shrinkLinesTo("", 8, 3));
+        assertEquals(Collections.emptyList(), StringUtil.shrinkLinesTo("\r\n", 8, 3));
+        assertEquals(Arrays.asList("a", "...", "e"), StringUtil.shrinkLinesTo("a\nb\r\nc\rd\n\ne\n", 8, 3));
+
+        Random random = new Random(20201018L);
+
+        for (int i = 0; i < 2000; ++i) {
+            String input = getRandomLines(random);
+            int maxLineLength = 8 + random.nextInt(8);
+            int maxLineCount = 3 + random.nextInt(8);
+
+            List<String> expected = StringUtil.shrinkLinesTo(
+                    Arrays.asList(Patterns.LINE_BREAK_PATTERN.split(input)), maxLineLength, maxLineCount
+            );
+            assertEquals(expected, StringUtil.shrinkLinesTo(input, maxLineLength, maxLineCount));
+            assertEquals(expected, StringUtil.shrinkLinesTo(new StringReader(input), maxLineLength, maxLineCount));
+        }
+    }
+
     @Test
     public void split() {
         internalTestSplit("size", '.', new String[] {"size"});
@@ -176,7 +377,241 @@ public class StringUtilTest {
         internalTestSplit(",,,,", ',', new String[] {"", "", "", "", ""});
     }
 
+    @Test
+    public void splitWithLimit() {
+        internalTestSplit("size.dice.nice", '.', 1, new String[] {"size.dice.nice"});
+        internalTestSplit("size.dice.nice", '.', 2, new String[] {"size", "dice.nice"});
+        internalTestSplit("size.dice.nice", '.', 3, new String[] {"size", "dice", "nice"});
+        internalTestSplit("size.dice.nice", '.', 4, new String[] {"size", "dice", "nice"});
+        internalTestSplit(".size.", '.', 2, new String[] {"", "size."});
+        internalTestSplit(",,,,", ',', 3, new String[] {"", "", ",,"});
+        internalTestSplit("", ',', 3, new String[] {""});
+    }
+
+    @Test
+    public void splitToBounds() {
+        int[] bounds = new int[6];
+
+        assertEquals(3, StringUtil.split("size.dice.nice", '.', bounds));
+        assertArrayEquals(new int[] {0, 4, 5, 9, 10, 14}, bounds);
+
+        assertEquals(3, StringUtil.split("a.b.c.d", '.', bounds));
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4, 7}, bounds);
+
+        assertEquals(2, StringUtil.split(new StringBuilder(".a"), '.', bounds));
+        assertArrayEquals(new int[] {0, 0, 1, 2}, Arrays.copyOf(bounds, 4));
+
+        assertEquals(1, StringUtil.split("", '.', bounds));
+        assertArrayEquals(new int[] {0, 0}, Arrays.copyOf(bounds, 2));
+    }
+
+    @Test
+    public void replaceAll() {
+        Map<String, String> replacementByTarget = new HashMap<>();
+        replacementByTarget.put("he", "HE");
+        replacementByTarget.put("she", "SHE");
+        replacementByTarget.put("hers", "HERS");
+        replacementByTarget.put("his", "HIS");
+        replacementByTarget.put("", "EMPTY");
+        replacementByTarget.put("s", null);
+
+        assertNull(StringUtil.replaceAll(null, replacementByTarget));
+        assertEquals("", StringUtil.replaceAll("", replacementByTarget));
+        assertEquals("text", StringUtil.replaceAll("text", null));
+        assertEquals("text", StringUtil.replaceAll("text", replacementByTarget));
+
+        assertEquals("uSHErs", StringUtil.replaceAll("ushers", replacementByTarget));
+        assertEquals("HERS HIS SHE HE", StringUtil.replaceAll("hers his she he", replacementByTarget));
+        assertEquals("HEHEHE", StringUtil.replaceAll("hehehe", replacementByTarget));
+        assertEquals("aHISHERSb", StringUtil.replaceAll("ahishersb", replacementByTarget));
+
+        replacementByTarget.clear();
+        replacementByTarget.put("bc", "1");
+        replacementByTarget.put("abcd", "2");
+        replacementByTarget.put("abcx", "3");
+        replacementByTarget.put("a", "4");
+        replacementByTarget.put("aa", "5");
+        assertEquals("2", StringUtil.replaceAll("abcd", replacementByTarget));
+        assertEquals("41e", StringUtil.replaceAll("abce", replacementByTarget));
+        assertEquals("x2x", StringUtil.replaceAll("xabcdx", replacementByTarget));
+        assertEquals("554", StringUtil.replaceAll("aaaaa", replacementByTarget));
+        assertEquals("{a}", StringUtil.replaceAll("{a}", Collections.singletonMap("a}}", "")));
+
+        replacementByTarget.clear();
+        replacementByTarget.put("${name}", "world");
+        replacementByTarget.put("${greeting}", "Hello");
+        String template = "${greeting}, ${name}! ${greeting} again, ${name}.";
+        String expected = StringUtil.replace(StringUtil.replace(template, "${name}", "world"), "${greeting}", "Hello");
+        assertEquals(expected, StringUtil.replaceAll(template, replacementByTarget));
+    }
+
+    @Test
+    public void replacerWithAppendable() throws IOException {
+        Map<String, String> replacementByTarget = new HashMap<>();
+        replacementByTarget.put("a", "b");
+        replacementByTarget.put("b", "a");
+
+        Replacer replacer = new Replacer(replacementByTarget);
+        StringBuilder result = new StringBuilder("> ");
+        replacer.replace(new StringBuilder("abba cab"), result);
+        assertEquals("> baab cba", result.toString());
+    }
+
     private static void internalTestSplit(String s, char c, String[] parts) {
         assertArrayEquals("Illegal split of '" + s + "' by '" + c + "'.", parts, StringUtil.split(s, c));
+        assertArrayEquals("Illegal split of '" + s + "' by '" + c + "'.", parts, StringUtil.split(s, c, 0));
+        assertArrayEquals("Illegal lazy split of '" + s + "' by '" + c + "'.", parts, toStrings(
+                StringUtil.splitIterator(s, c)
+        ));
+    }
+
+    private static void internalTestSplit(String s, char c, int limit, String[] parts) {
+        assertArrayEquals("Illegal split of '" + s + "' by '" + c + "'.", parts, StringUtil.split(s, c, limit));
+        assertArrayEquals("Illegal lazy split of '" + s + "' by '" + c + "'.", parts, toStrings(
+                StringUtil.splitIterator(s, c, limit)
+        ));
+    }
+
+    @SuppressWarnings({"OverlyComplexMethod", "OverlyLongMethod"})
+    private static int compareStringsSmartReference(String stringA, String stringB) {
+        int lengthA = stringA.length();
+        int lengthB = stringB.length();
+
+        StringBuilder numberGroupA = new StringBuilder();
+        StringBuilder numberGroupB = new StringBuilder();
+
+        int offsetA = 0;
+        int offsetB = 0;
+
+        while (true) {
+            char charA;
+            char charB;
+
+            while (offsetA < lengthA && !Character.isDigit(charA = stringA.charAt(offsetA))) {
+                if (offsetB < lengthB && !Character.isDigit(charB = stringB.charAt(offsetB))) {
+                    if (charA != charB) {
+                        return (int) charA - (int) charB;
+                    }
+                } else {
+                    return 1;
+                }
+
+                ++offsetA;
+                ++offsetB;
+            }
+
+            if (offsetB < lengthB && !Character.isDigit(stringB.charAt(offsetB))) {
+                return -1;
+            }
+
+            while (offsetA < lengthA && Character.isDigit(charA = stringA.charAt(offsetA))) {
+                numberGroupA.append(charA);
+                ++offsetA;
+            }
+
+            while (offsetB < lengthB && Character.isDigit(charB = stringB.charAt(offsetB))) {
+                numberGroupB.append(charB);
+                ++offsetB;
+            }
+
+            if (numberGroupA.length() == 0) {
+                return numberGroupB.length() == 0 ? 0 : -1;
+            }
+
+            if (numberGroupB.length() == 0) {
+                return 1;
+            }
+
+            String groupValueA = numberGroupA.toString();
+            String groupValueB = numberGroupB.toString();
+
+            numberGroupA.setLength(0);
+            numberGroupB.setLength(0);
+
+            long numberA;
+            try {
+                numberA = Long.parseLong(groupValueA);
+            } catch (NumberFormatException ignored) {
+                int numberAsStringComparisonResult = groupValueA.compareTo(groupValueB);
+                if (numberAsStringComparisonResult == 0) {
+                    continue;
+                } else {
+                    return numberAsStringComparisonResult;
+                }
+            }
+
+            long numberB;
+            try {
+                numberB = Long.parseLong(groupValueB);
+            } catch (NumberFormatException ignored) {
+                return groupValueA.compareTo(groupValueB);
+            }
+
+            if (numberA > numberB) {
+                return 1;
+            }
+
+            if (numberA < numberB) {
+                return -1;
+            }
+
+            if (groupValueA.length() != groupValueB.length()) {
+                return groupValueA.compareTo(groupValueB);
+            }
+        }
+    }
+
+    private static String getRandomLines(Random random) {
+        StringBuilder input = new StringBuilder();
+
+        for (int j = random.nextInt(40); j > 0; --j) {
+            int kind = random.nextInt(6);
+            if (kind == 0) {
+                input.append('\r');
+            } else if (kind == 1) {
+                input.append('\n');
+            } else if (kind == 2) {
+                input.append("\r\n");
+            } else {
+                input.append(StringUtils.repeat((char) ('a' + kind), random.nextInt(25)));
+            }
+        }
+
+        return input.toString();
+    }
+
+    private static String cropLinesReference(String input, int maxLineLength, int maxLineNumber) {
+        if (StringUtil.isEmpty(input)) {
+            return input;
+        }
+
+        String[] lines = Patterns.LINE_BREAK_PATTERN.split(input);
+        StringBuilder result = new StringBuilder();
+
+        for (int i = 0; i < maxLineNumber && i < lines.length; ++i) {
+            String line = lines[i];
+            result.append(line.length() > maxLineLength ? line.substring(0, maxLineLength) + "..." : line);
+            result.append("\r\n");
+        }
+
+        if (lines.length > maxLineNumber) {
+            result.append("...\r\n");
+        }
+
+        return result.toString();
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static String[] toStrings(Iterator<CharSequence> iterator) {
+        List<String> strings = new ArrayList<>();
+        iterator.forEachRemaining(part -> strings.add(part.toString()));
+        return strings.toArray(new String[0]);
     }
 }
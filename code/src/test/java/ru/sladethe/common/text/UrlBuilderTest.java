@@ -0,0 +1,46 @@
+package ru.sladethe.common.text;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Maxim Shipko (sladethe@gmail.com)
+ */
+@SuppressWarnings("MessageMissingOnJUnitAssertion")
+public class UrlBuilderTest {
+    @Test
+    public void build() {
+        String url = "http://localhost/";
+        assertSame(url, new UrlBuilder(url).build());
+        assertSame(url, new UrlBuilder(url).appendParameter(" ", "1").build());
+
+        UrlBuilder urlBuilder = new UrlBuilder("http://localhost/path?id=17#top");
+        urlBuilder.appendParameter("a", "1");
+        assertEquals("http://localhost/path?a=1&id=17#top", urlBuilder.build());
+
+        urlBuilder.appendParameter("b", "").appendParameter("c", "3");
+        assertEquals("http://localhost/path?a=1&b&c=3&id=17#top", urlBuilder.build());
+        assertEquals("http://localhost/path?a=1&b&c=3&id=17#top", urlBuilder.toString());
+
+        assertEquals(
+                "http://localhost?a=1#?b=2", new UrlBuilder("http://localhost#?b=2").appendParameter("a", "1").build()
+        );
+        assertEquals("http://localhost/?a=1", new UrlBuilder("http://localhost/?").appendParameter("a", "1").build());
+        assertEquals("a b", new UrlBuilder("a b").appendParameter("a", "1").build());
+    }
+
+    @Test
+    public void appendManyParameters() {
+        String url = "http://localhost/?x=0";
+        UrlBuilder urlBuilder = new UrlBuilder(url);
+        String expectedUrl = url;
+
+        for (int i = 1; i <= 100; ++i) {
+            urlBuilder.appendParameter("p" + i, Integer.toString(i));
+            expectedUrl = UrlUtil.appendParameterToUrl(expectedUrl, "p" + (101 - i), Integer.toString(101 - i));
+        }
+
+        assertEquals(expectedUrl, urlBuilder.build());
+    }
+}
@@ -1,14 +1,95 @@
 package ru.sladethe.common.text;
 
+import org.apache.commons.validator.routines.DomainValidator;
+import org.apache.commons.validator.routines.UrlValidator;
 import org.junit.Test;
 
-import static org.junit.Assert.assertEquals;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+
+import static org.junit.Assert.*;
 
 /**
  * @author Maxim Shipko (sladethe@gmail.com)
  */
 @SuppressWarnings("MessageMissingOnJUnitAssertion")
 public class UrlUtilTest {
+    @Test
+    public void isValidUrl() {
+        String[] urls = {
+                "http://localhost", "http://localhost/", "https://example.com/a/b-c_d~e.f?x=1&y=%20#z",
+                "http://example.lo", "http://example.com//a", "http://example.com/./a", "http://example.com/../a", "http://example.com/a/..",
+                "http://example.com/a b", "http://example.com/?a b", "http://example.com:8080/", "http://127.0.0.1/",
+                "http://user@example.com/", "HTTP://EXAMPLE.COM/", "ftp://example.com/", "http://example.unknowntld/",
+                "http:///path", "http://exa_mple.com/", "https://пример.рф/", "http://example.com/a?b#",
+                "http://-a.com/", "http://a.com./", "mailto:a@b.com", "http://example.com/\u00A0", "http://example.com/?\u00A0"
+        };
+
+        String[][] schemeSets = {null, {"http", "https"}, {"HTTPS"}, {"ftp"}, {}};
+
+        for (String[] schemes : schemeSets) {
+            UrlValidator urlValidator = new UrlValidator(schemes, UrlValidator.ALLOW_LOCAL_URLS);
+
+            for (String url : urls) {
+                for (int i = 0; i < 2; ++i) {
+                    assertEquals(url, urlValidator.isValid(url), UrlUtil.isValidUrl(url, schemes));
+                }
+            }
+        }
+
+        assertTrue(UrlUtil.isValidUrl("https://example.com/path"));
+        assertTrue(UrlUtil.isValidUrl("http://test.lo/path"));
+        assertFalse(UrlUtil.isValidUrl("ftp://example.com/path"));
+        assertFalse(UrlUtil.isValidUrl(" "));
+        assertFalse(UrlUtil.isValidUrl(null));
+    }
+
+    @Test
+    public void validateUrls() {
+        List<String> urls = new ArrayList<>();
+        Random random = new Random(20201018L);
+
+        for (int i = 0; i < 1000; ++i) {
+            urls.add(random.nextBoolean() ? "http://example" + i + ".com/" : random.nextBoolean() ? "bad url" : null);
+        }
+
+        BitSet validUrls = UrlUtil.validateUrls(urls);
+        BitSet validFtpUrls = UrlUtil.validateUrls(urls, new String[] {"ftp"});
+
+        for (int i = 0; i < urls.size(); ++i) {
+            assertEquals(UrlUtil.isValidUrl(urls.get(i)), validUrls.get(i));
+            assertFalse(validFtpUrls.get(i));
+        }
+
+        assertTrue(UrlUtil.validateUrls(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void normalizeUrl() {
+        assertEquals(
+                "http://example.com/Path?a=1&b=2&b=1&c#Top",
+                UrlUtil.normalizeUrl("HTTP://Example.COM:80/Path?c&b=2&&a=1&b=1#Top")
+        );
+        assertEquals("https://user@example.com:8443/", UrlUtil.normalizeUrl("HTTPS://user@EXAMPLE.com:8443/"));
+        assertEquals("https://example.com", UrlUtil.normalizeUrl("https://example.com:443"));
+        assertEquals("ftp://example.com/?x=%20", UrlUtil.normalizeUrl("ftp://example.com:21/?x=%20"));
+        assertEquals("http://example.com/", UrlUtil.normalizeUrl("http://example.com/?&"));
+        assertEquals("mailto:a@B.com", UrlUtil.normalizeUrl("MAILTO:a@B.com"));
+        assertEquals("/a?a&b", UrlUtil.normalizeUrl("/a?b&a"));
+        assertNull(UrlUtil.normalizeUrl("a b"));
+        assertNull(UrlUtil.normalizeUrl(null));
+
+        assertEquals(
+                Arrays.asList("http://example.com/?a&b", null, null, "https://example.com"),
+                UrlUtil.normalizeUrls(Arrays.asList(
+                        "http://Example.com:80/?b&a", "ftp://example.com/", "bad url", "https://example.com:443"
+                ))
+        );
+    }
+
     @Test
     public void appendParameterToUrl() {
         assertEquals(
@@ -178,4 +259,33 @@ public class UrlUtilTest {
                 )
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * Loads {@link UrlUtil} in a separate class loader, where {@code DomainValidator} is used before the first URL
+     * validation.
+     */
+    @Test
+    public void isValidUrlAfterDomainValidatorIsUsed() throws Exception {
+        List<URL> classPath = new ArrayList<>();
+        for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            classPath.add(new File(path).toURI().toURL());
+        }
+
+        try (URLClassLoader classLoader = new URLClassLoader(
+                classPath.toArray(new URL[0]), ClassLoader.getSystemClassLoader().getParent()
+        )) {
+            Class<?> domainValidatorClass = classLoader.loadClass(DomainValidator.class.getName());
+            assertNotSame(DomainValidator.class, domainValidatorClass);
+            domainValidatorClass.getMethod("getInstance").invoke(null);
+
+            Method isValidUrlMethod = classLoader.loadClass(UrlUtil.class.getName())
+                    .getMethod("isValidUrl", String.class);
+
+            for (int i = 0; i < 2; ++i) {
+                assertTrue((Boolean) isValidUrlMethod.invoke(null, "http://example.com/path"));
+                assertTrue((Boolean) isValidUrlMethod.invoke(null, "https://example.com:8080/a?b=c#d"));
+                assertFalse((Boolean) isValidUrlMethod.invoke(null, "http://example.com//a"));
+            }
+        }
+    }
+}